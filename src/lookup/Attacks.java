@@ -0,0 +1,87 @@
+package lookup;
+
+import static lookup.Pieces.*;
+
+/**
+ * Precomputed attack tables for the 0x88 board.
+ *
+ * <p>On a 0x88 board the difference between two square indexes says on its own whether they share a rank, file or
+ * diagonal, or are a knight's or king's step apart, wherever the squares are. The difference 'from - to' lies
+ * between -119 and 119, so the tables are indexed by 'from - to + 119'. ATTACKERS tells which pieces standing on
+ * 'from' could attack 'to' on an empty board, and STEPS gives the unit step from 'from' towards 'to' along their
+ * common line, so an attack is confirmed by walking that one ray.</p>
+ */
+public final class Attacks {
+
+  // The offset that turns a difference of two 0x88 indexes into a table index.
+  public static final int OFFSET = 119;
+
+  private static final int[] KNIGHT_DELTAS = { 18, 33, 31, 14, -18, -33, -31, -14 };
+  private static final int[] KING_DELTAS = { 15, 16, 17, 1, -1, -17, -16, -15 };
+  private static final int[] QUEEN_DELTAS = { 1, -1, 16, -16, 15, 17, -15, -17 };
+
+  // Indexed by 'from - to + OFFSET': bit 'piece' is set for each piece, type and colour, that could attack 'to'
+  // from 'from' on an empty board.
+  public static final int[] ATTACKERS = new int[ 2 * OFFSET + 1 ];
+
+  // Indexed by 'from - to + OFFSET': the step that leads from 'from' to 'to' along a rank, file or diagonal, or 0.
+  public static final int[] STEPS = new int[ 2 * OFFSET + 1 ];
+
+  static {
+    for ( int delta : KNIGHT_DELTAS ) {
+      addAttacker( -delta, KNIGHT );
+    }
+    for ( int delta : KING_DELTAS ) {
+      addAttacker( -delta, KING );
+    }
+    // White pawns attack up the board and black pawns down it.
+    ATTACKERS[ -15 + OFFSET ] |= 1 << PAWN;
+    ATTACKERS[ -17 + OFFSET ] |= 1 << PAWN;
+    ATTACKERS[ 15 + OFFSET ] |= 1 << BPAWN;
+    ATTACKERS[ 17 + OFFSET ] |= 1 << BPAWN;
+
+    for ( int step : QUEEN_DELTAS ) {
+      byte slider = ( step == 1 || step == -1 || step == 16 || step == -16 ) ? ROOK : BISHOP;
+      for ( int i = 1; i < 8; i++ ) {
+        STEPS[ -i * step + OFFSET ] = step;
+        addAttacker( -i * step, slider );
+        addAttacker( -i * step, QUEEN );
+      }
+    }
+  }
+
+  private Attacks() {
+  }
+
+  /**
+   * Could 'piece' standing on 'from' attack 'to' if nothing stood between them?
+   *
+   * @param piece    The type and colour of the piece.
+   * @param from     The 0x88 index of the square the piece is on.
+   * @param to       The 0x88 index of the square to check.
+   *
+   * @return True if the piece's moves reach the square on an empty board.
+   */
+  public static boolean canAttack( byte piece, int from, int to ) {
+    return ( ( ATTACKERS[ from - to + OFFSET ] & ( 1 << ( piece & 0xF ) ) ) != 0 );
+  }
+
+  /**
+   * The step that leads from one square to another along their common rank, file or diagonal.
+   *
+   * @param from    The 0x88 index of the first square.
+   * @param to      The 0x88 index of the second square.
+   *
+   * @return The step to add to 'from' to move towards 'to', or 0 if they are not on one line.
+   */
+  public static int step( int from, int to ) {
+    return ( STEPS[ from - to + OFFSET ] );
+  }
+
+  /**
+   * Mark the piece type, of both colours, as able to attack across a difference of 'from - to'.
+   */
+  private static void addAttacker( int difference, byte pieceType ) {
+    ATTACKERS[ difference + OFFSET ] |= ( 1 << pieceType ) | ( 1 << ( pieceType | BLACK ) );
+  }
+}
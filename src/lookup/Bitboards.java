@@ -0,0 +1,243 @@
+package lookup;
+
+/**
+ * Precomputed attack sets for bitboards, in which bit 'rank * 8 + file' stands for a square (a1 is bit 0, h8 is
+ * bit 63).
+ *
+ * <p>Knight, king and pawn attacks depend only on the square and are looked up directly. Bishop and rook attacks
+ * also depend on which squares block their rays; they are found with magic bitboards: the blockers on the piece's
+ * rays are multiplied by a magic number for the square, and the top bits of the product index a table holding the
+ * attack set for every arrangement of blockers. The magic numbers were found by a random search for numbers that
+ * map every arrangement of blockers to an index without a harmful collision.</p>
+ */
+public final class Bitboards {
+
+  // Indexed by square.
+  public static final long[] KNIGHT_ATTACKS = new long[ 64 ];
+  public static final long[] KING_ATTACKS = new long[ 64 ];
+
+  // Indexed by [ colour >> 3 ][ square ]: the squares a pawn of that colour on the square attacks.
+  public static final long[][] PAWN_ATTACKS = new long[ 2 ][ 64 ];
+
+  // Indexed by [ square ][ square ]: the squares strictly between two squares on the same rank, file or diagonal,
+  // or nothing if they are not on one.
+  public static final long[][] BETWEEN = new long[ 64 ][ 64 ];
+
+  // Indexed by [ square ][ square ]: the whole rank, file or diagonal through two squares, or nothing if they are
+  // not on one.
+  public static final long[][] LINE = new long[ 64 ][ 64 ];
+
+  private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+  private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+  private static final int[][] QUEEN_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 },
+                                                    { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+  private static final long[] ROOK_MASKS = new long[ 64 ];
+  private static final long[] ROOK_MAGICS = {
+    0x008000B488A04000L, 0x41802000400080F4L, 0x008010008020000AL, 0x4100090104201000L,
+    0x1080080004000281L, 0x0200010810040200L, 0x0280060000800500L, 0x1100030000896242L,
+    0x4042002040820100L, 0x2248808020004000L, 0x1011001420004108L, 0x0002000822001044L,
+    0x0002001005200A00L, 0x0000808004000200L, 0x0004000802A10410L, 0x0414801041000080L,
+    0x0630218002844000L, 0x0440012010002802L, 0x4008808010082001L, 0x2000848008001000L,
+    0x0040808004000800L, 0x0401010002080400L, 0x48A20400502A4918L, 0x8101020010810054L,
+    0x8000400880008021L, 0x0000200080400080L, 0x0000200100184100L, 0x4012002600100840L,
+    0x0008000404004020L, 0x0022020080040080L, 0x4032000200040801L, 0x0341004200108104L,
+    0x804040008380022CL, 0x2001008021004004L, 0x1102220086001040L, 0x0000200812004200L,
+    0x40C0040080800800L, 0x4022000280800400L, 0x815010080400863DL, 0x02012C0882000441L,
+    0x8144208040148002L, 0x201000600050C000L, 0x1001002000110040L, 0x0400210010010008L,
+    0x0140080100050010L, 0x0884000402008080L, 0x0000010248840010L, 0x01180400A6420011L,
+    0x04A0208000400080L, 0x0070804000200080L, 0x4C02008011204E00L, 0x0200280081100180L,
+    0x1040080011008500L, 0x0054008002000480L, 0x5001000442001100L, 0x0034030A54840200L,
+    0x0400410020108602L, 0x0400204000830013L, 0x3000090020024211L, 0x2041002030010439L,
+    0x1862000410082002L, 0x68120010080C116AL, 0x4008101081123804L, 0x000010C400850022L
+  };
+  private static final int[] ROOK_SHIFTS = new int[ 64 ];
+  private static final long[][] ROOK_TABLE = new long[ 64 ][];
+
+  private static final long[] BISHOP_MASKS = new long[ 64 ];
+  private static final long[] BISHOP_MAGICS = {
+    0x0084100418102144L, 0x00080810C0820400L, 0x0890040090200000L, 0x20440410900400A0L,
+    0x1081104001008904L, 0x0002011009002008L, 0x0000442220501001L, 0x4122034228040200L,
+    0x0000220830090043L, 0x4420081084088020L, 0x0100308400922081L, 0x0000290401012804L,
+    0x02000202110800A6L, 0x0485021104204863L, 0x6000A04110105230L, 0x8200182402480420L,
+    0x0410A120C4010840L, 0x811040C282022410L, 0x0048000108030010L, 0x100800042208A029L,
+    0x0001000290400012L, 0x0008800110100100L, 0x9A01001088011008L, 0x1800460832021000L,
+    0x6A04450410604810L, 0x0008D80042100100L, 0x0104010048880100L, 0x0040044004010060L,
+    0x0141001041004005L, 0x0002040B02008200L, 0x4024008101080100L, 0x0120420005090100L,
+    0x140AA84040049003L, 0x2302100210108205L, 0x0000104808040800L, 0x0001910800040041L,
+    0x08040084002A0500L, 0x0020010210690040L, 0x0888482080050090L, 0x8210810040010400L,
+    0x1011080840100408L, 0x2034010110142902L, 0x0841884050060800L, 0x0000402214010800L,
+    0x021A108200900600L, 0x0061021802008840L, 0x0104014404020101L, 0x80020212102A0A00L,
+    0x540200D004100604L, 0x1000840442020421L, 0x0002090400920000L, 0x8088020205040002L,
+    0x21204012060E0030L, 0x0000301150012010L, 0x0221021002008A41L, 0x0002080800809009L,
+    0x00020445040120A0L, 0x05212100A2012010L, 0x1401000201208808L, 0x4001000005048821L,
+    0x0081000222204100L, 0x400118440C482605L, 0x0200242098820080L, 0x000224040802012BL
+  };
+  private static final int[] BISHOP_SHIFTS = new int[ 64 ];
+  private static final long[][] BISHOP_TABLE = new long[ 64 ][];
+
+  static {
+    for ( int square = 0; square < 64; square++ ) {
+      KNIGHT_ATTACKS[ square ] = steps( square, new int[][]{ { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 },
+                                                             { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } } );
+      KING_ATTACKS[ square ] = steps( square, new int[][]{ { 1, 0 }, { 1, 1 }, { 0, 1 }, { -1, 1 },
+                                                           { -1, 0 }, { -1, -1 }, { 0, -1 }, { 1, -1 } } );
+      PAWN_ATTACKS[ 0 ][ square ] = steps( square, new int[][]{ { -1, 1 }, { 1, 1 } } );
+      PAWN_ATTACKS[ 1 ][ square ] = steps( square, new int[][]{ { -1, -1 }, { 1, -1 } } );
+      initLines( square );
+    }
+
+    for ( int square = 0; square < 64; square++ ) {
+      initMagic( square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS[ square ], ROOK_SHIFTS, ROOK_TABLE );
+      initMagic( square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS[ square ], BISHOP_SHIFTS, BISHOP_TABLE );
+    }
+  }
+
+  private Bitboards() {
+  }
+
+  /**
+   * Convert a 0x88 square index into a bitboard square index.
+   *
+   * @param position    The 0x88 square index.
+   *
+   * @return The bitboard square index, 0 to 63.
+   */
+  public static int toSquare( int position ) {
+    return ( ( position + ( position & 7 ) ) >> 1 );
+  }
+
+  /**
+   * Convert a bitboard square index into a 0x88 square index.
+   *
+   * @param square    The bitboard square index, 0 to 63.
+   *
+   * @return The 0x88 square index.
+   */
+  public static int toPosition( int square ) {
+    return ( square + ( square & ~7 ) );
+  }
+
+  /**
+   * The squares attacked by a rook on 'square'.
+   *
+   * @param square      The bitboard square index of the rook.
+   * @param occupied    The set of occupied squares.
+   *
+   * @return The attacked squares, including the first blocker in each direction.
+   */
+  public static long rookAttacks( int square, long occupied ) {
+    return ( ROOK_TABLE[ square ][ (int)( ( ( occupied & ROOK_MASKS[ square ] ) * ROOK_MAGICS[ square ] )
+                                          >>> ROOK_SHIFTS[ square ] ) ] );
+  }
+
+  /**
+   * The squares attacked by a bishop on 'square'.
+   *
+   * @param square      The bitboard square index of the bishop.
+   * @param occupied    The set of occupied squares.
+   *
+   * @return The attacked squares, including the first blocker in each direction.
+   */
+  public static long bishopAttacks( int square, long occupied ) {
+    return ( BISHOP_TABLE[ square ][ (int)( ( ( occupied & BISHOP_MASKS[ square ] ) * BISHOP_MAGICS[ square ] )
+                                            >>> BISHOP_SHIFTS[ square ] ) ] );
+  }
+
+  /**
+   * The squares attacked by a queen on 'square'.
+   *
+   * @param square      The bitboard square index of the queen.
+   * @param occupied    The set of occupied squares.
+   *
+   * @return The attacked squares, including the first blocker in each direction.
+   */
+  public static long queenAttacks( int square, long occupied ) {
+    return ( rookAttacks( square, occupied ) | bishopAttacks( square, occupied ) );
+  }
+
+  /**
+   * The set of squares reached by single steps of the given file and rank offsets that stay on the board.
+   */
+  private static long steps( int square, int[][] offsets ) {
+    long attacks = 0;
+    for ( int[] offset : offsets ) {
+      int file = ( square & 7 ) + offset[ 0 ];
+      int rank = ( square >> 3 ) + offset[ 1 ];
+      if ( file >= 0 && file < 8 && rank >= 0 && rank < 8 ) {
+        attacks |= 1L << ( rank * 8 + file );
+      }
+    }
+    return ( attacks );
+  }
+
+  /**
+   * The squares attacked along the given directions from 'square', walking each ray until it leaves the board or
+   * reaches an occupied square. If 'edges' is false the last square of each ray is left out, which gives the
+   * squares whose occupancy can change the attacks.
+   */
+  private static long slide( int square, int[][] directions, long occupied, boolean edges ) {
+    long attacks = 0;
+    for ( int[] direction : directions ) {
+      int file = ( square & 7 ) + direction[ 0 ];
+      int rank = ( square >> 3 ) + direction[ 1 ];
+      while ( file >= 0 && file < 8 && rank >= 0 && rank < 8 ) {
+        int nextFile = file + direction[ 0 ];
+        int nextRank = rank + direction[ 1 ];
+        if ( !edges && ( nextFile < 0 || nextFile > 7 || nextRank < 0 || nextRank > 7 ) ) break;
+
+        long bit = 1L << ( rank * 8 + file );
+        attacks |= bit;
+        if ( ( occupied & bit ) != 0 ) break;
+        file = nextFile;
+        rank = nextRank;
+      }
+    }
+    return ( attacks );
+  }
+
+  /**
+   * Fill in BETWEEN and LINE for every square on a rank, file or diagonal with 'square'.
+   */
+  private static void initLines( int square ) {
+    for ( int[] direction : QUEEN_DIRECTIONS ) {
+      long line = slide( square, new int[][]{ direction, { -direction[ 0 ], -direction[ 1 ] } }, 0, true )
+                  | 1L << square;
+      long between = 0;
+      int file = ( square & 7 ) + direction[ 0 ];
+      int rank = ( square >> 3 ) + direction[ 1 ];
+      for ( ; file >= 0 && file < 8 && rank >= 0 && rank < 8; file += direction[ 0 ], rank += direction[ 1 ] ) {
+        int other = rank * 8 + file;
+        BETWEEN[ square ][ other ] = between;
+        LINE[ square ][ other ] = line;
+        between |= 1L << other;
+      }
+    }
+  }
+
+  /**
+   * Fill in the attack table of a sliding piece on 'square' by looking up every arrangement of blockers on its rays
+   * with the square's magic number.
+   */
+  private static void initMagic( int square, int[][] directions, long[] masks, long magic, int[] shifts,
+                                 long[][] table ) {
+    long mask = slide( square, directions, 0, false );
+    int bits = Long.bitCount( mask );
+
+    masks[ square ] = mask;
+    shifts[ square ] = 64 - bits;
+    table[ square ] = new long[ 1 << bits ];
+
+    // Walk through every subset of the mask.
+    long occupied = 0;
+    do {
+      int index = (int)( ( occupied * magic ) >>> ( 64 - bits ) );
+      long attacks = slide( square, directions, occupied, true );
+      if ( table[ square ][ index ] != 0 && table[ square ][ index ] != attacks ) {
+        throw new IllegalStateException( "Bad magic number for square " + square );
+      }
+      table[ square ][ index ] = attacks;
+      occupied = ( occupied - mask ) & mask;
+    } while ( occupied != 0 );
+  }
+}
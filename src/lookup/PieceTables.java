@@ -113,4 +113,18 @@ public final class PieceTables {
     -30,-40,-40,-50,-50,-40,-40,-30, 0, 0, 0, 0, 0, 0, 0, 0,
     -30,-40,-40,-50,-50,-40,-40,-30, 0, 0, 0, 0, 0, 0, 0, 0 };
 
-}
\ No newline at end of file
+  // The position table of each piece in the opening and later in the game, indexed by piece type and colour. Only
+  // the queen has different tables for the two.
+  public static final int[][] OPENING_POSITION_TABLES =
+  { null, WPAWN_POSITION_TABLE, KNIGHT_POSITION_TABLE, WBISHOP_POSITION_TABLE, WROOK_POSITION_TABLE,
+    OPENING_QUEEN_POSITION_TABLE, WKING_POSITION_TABLE, null,
+    null, BPAWN_POSITION_TABLE, KNIGHT_POSITION_TABLE, BBISHOP_POSITION_TABLE, BROOK_POSITION_TABLE,
+    OPENING_QUEEN_POSITION_TABLE, BKING_POSITION_TABLE, null };
+
+  public static final int[][] LATER_POSITION_TABLES =
+  { null, WPAWN_POSITION_TABLE, KNIGHT_POSITION_TABLE, WBISHOP_POSITION_TABLE, WROOK_POSITION_TABLE,
+    QUEEN_POSITION_TABLE, WKING_POSITION_TABLE, null,
+    null, BPAWN_POSITION_TABLE, KNIGHT_POSITION_TABLE, BBISHOP_POSITION_TABLE, BROOK_POSITION_TABLE,
+    QUEEN_POSITION_TABLE, BKING_POSITION_TABLE, null };
+
+}
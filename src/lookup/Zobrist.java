@@ -0,0 +1,50 @@
+package lookup;
+
+import java.util.Random;
+
+/**
+ * Random keys used to build a 64-bit Zobrist hash of a board position.
+ *
+ * <p>The hash of a position is the XOR of the key of every piece on its square, the key for the current castling
+ * rights, the key for the en passant file (if any) and, when black is to move, the side key. The keys are generated
+ * from a fixed seed so that hashes are the same from run to run.</p>
+ */
+public final class Zobrist {
+
+  // Indexed by [ piece & ( COLOUR_MASK | PIECE_MASK ) ][ 0x88 square ]. The rows for EMPTY are all zero.
+  public static final long[][] PIECE_KEYS = new long[ 16 ][ 128 ];
+
+  // Indexed by a four bit set of castling rights.
+  public static final long[] CASTLING_KEYS = new long[ 16 ];
+
+  // Indexed by the file of the pawn that has just made a double step.
+  public static final long[] EN_PASSANT_KEYS = new long[ 8 ];
+
+  public static final long SIDE_KEY;
+
+  static {
+    Random random = new Random( 0x88L );
+
+    for ( int piece = 0; piece < 16; piece++ ) {
+      if ( ( piece & Masks.PIECE_MASK ) == Pieces.EMPTY ) {
+        continue;
+      }
+      for ( int square = 0; square < 128; square++ ) {
+        if ( ( square & 0x88 ) == Pieces.VALID ) {
+          PIECE_KEYS[ piece ][ square ] = random.nextLong();
+        }
+      }
+    }
+
+    // CASTLING_KEYS[ 0 ] stays zero, so a position without castling rights needs no key.
+    for ( int rights = 1; rights < 16; rights++ ) {
+      CASTLING_KEYS[ rights ] = random.nextLong();
+    }
+
+    for ( int file = 0; file < 8; file++ ) {
+      EN_PASSANT_KEYS[ file ] = random.nextLong();
+    }
+
+    SIDE_KEY = random.nextLong();
+  }
+}
@@ -1,10 +1,23 @@
 package model;
 
+import lookup.Pieces;
 import model.evaluators.EasyEvaluator;
 import model.evaluators.MediumEvaluator;
 import model.evaluators.Evaluator;
 import model.evaluators.MediumEvaluator;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * The artificial intelligence player.
  *
@@ -14,9 +27,99 @@ import model.evaluators.MediumEvaluator;
  */
 public class AI extends Player {
 
+  // The default size of the transposition table in megabytes.
+  public static final int DEFAULT_HASH_SIZE = 16;
+
+  // Parallel search modes: the threads either share out the root moves, or all search the whole tree and share
+  // their results through the transposition table.
+  public static final int ROOT_SPLITTING = 0;
+  public static final int LAZY_SMP = 1;
+
+  // The bounds of a full search window.
+  private static final int INFINITY = Integer.MAX_VALUE - 1;
+  // Scores beyond this magnitude mean that a forced mate has been found.
+  private static final int MATE_THRESHOLD = Integer.MAX_VALUE - 1000;
+  // The half width of the first window searched around the score of the previous iteration. The window grows by
+  // ASPIRATION_GROWTH times each time the score falls outside it.
+  private static final int ASPIRATION_WINDOW = 25;
+  private static final int ASPIRATION_GROWTH = 4;
+  // The score of a position drawn by repetition or by the fifty move rule.
+  private static final int DRAW_SCORE = 0;
+
+  // The number of moves the remaining clock time is assumed to be spread over.
+  private static final int MOVES_TO_GO = 30;
+  // The least time, in milliseconds, that a move is given on a running clock.
+  private static final long MINIMUM_MOVE_TIME = 10;
+  // Captures that cannot bring the score within this much material of alpha are not searched in quiescence.
+  private static final int DELTA_MARGIN = 200;
+  // The search checks its time and node budget every this many positions, plus one.
+  private static final int LIMIT_CHECK_INTERVAL = 1023;
+  // The deepest ply from the root the search can reach, quiescence included.
+  private static final int MAX_PLY = MoveOrderer.MAX_PLY;
+  // After a null move the opponent's reply is searched this much shallower, or one more ply shallower from
+  // NULL_MOVE_DEEP_DEPTH on. Nodes shallower than NULL_MOVE_MIN_DEPTH do not try a null move.
+  private static final int NULL_MOVE_REDUCTION = 2;
+  private static final int NULL_MOVE_DEEP_DEPTH = 6;
+  private static final int NULL_MOVE_MIN_DEPTH = 3;
+  // Quiet moves after the first LMR_MIN_MOVES of a node at least LMR_MIN_DEPTH deep are searched a ply shallower,
+  // and two plies shallower after the first LMR_DEEP_MOVES.
+  private static final int LMR_MIN_MOVES = 3;
+  private static final int LMR_DEEP_MOVES = 8;
+  private static final int LMR_MIN_DEPTH = 3;
+  // Frontier pruning is tried at nodes this close to the horizon, and razoring at nodes within RAZOR_DEPTH of it.
+  private static final int FRONTIER_DEPTH = 3;
+  private static final int RAZOR_DEPTH = 2;
+  // The default frontier pruning margins per ply of remaining depth, in units of Board material.
+  public static final int DEFAULT_FUTILITY_MARGIN = 150;
+  public static final int DEFAULT_REVERSE_FUTILITY_MARGIN = 120;
+  public static final int DEFAULT_RAZOR_MARGIN = 300;
+
   private int depth;
   private Evaluator evaluator;
-
+  private TranspositionTable table;
+  private MoveOrderer orderer;
+  // A move list and a move picker for each ply, so that the search generates moves without allocating.
+  private int[][] moveBuffers;
+  private MovePicker[] pickers;
+  // The score of the best root move found by the last root search.
+  private int rootScore;
+  private long nodes;
+  private long nodeLimit;
+  // The clock of the running search, kept by the master. A ponder hit restarts it while the search runs.
+  private volatile long searchStart;
+  private volatile long moveTime;
+  private volatile long deadline;
+  // The AI whose search this one is helping with, or this AI itself.
+  private AI master;
+  private volatile boolean stopped;
+  // Searches are numbered as they are requested, so that a stop request only reaches the searches requested before
+  // it and not one that starts after it, and a cancelled search stops only itself. The numbers of the last stopped
+  // search, of the cancelled searches yet to start and of the running search are guarded by stopLock.
+  private final AtomicLong searchCount = new AtomicLong();
+  private final Object stopLock = new Object();
+  private long lastStoppedSearch;
+  private final Set<Long> cancelledSearches = new HashSet<Long>();
+  private long runningSearch;
+  // The opponent's move expected by the last ponder search, the number of that search, and the number of the last
+  // ponder search whose expected move was played; the numbers are guarded by stopLock.
+  private volatile Move ponderMove;
+  private long ponderSearch;
+  private long ponderHitSearch;
+  private AtomicLong nodesSearched;
+  private int parallelism;
+  private int parallelMode;
+  private AI[] workers;
+  private ForkJoinPool pool;
+  private boolean nullMovePruning;
+  private boolean lateMoveReductions;
+  private int futilityMargin;
+  private int reverseFutilityMargin;
+  private int razorMargin;
+  // The number of moves skipped by futility pruning and of nodes cut off by reverse futility pruning and razoring
+  // in the last search.
+  private long futilityPrunes;
+  private long reverseFutilityPrunes;
+  private long razorPrunes;
 
   /**
    * Creates an AI with an extra parameter to select the evaluator and changed difficulty level to be the depth
@@ -27,66 +130,1032 @@ public class AI extends Player {
    * @param timeRemaining
    */
   public AI(int depth,int evaluatorToSelect, byte colour, String name, long timeRemaining) {
+    this( depth, evaluatorToSelect, colour, name, timeRemaining, DEFAULT_HASH_SIZE );
+  }
+
+  /**
+   * Creates an AI that uses a transposition table of the given size.
+   * @param depth
+   * @param evaluatorToSelect
+   * @param colour
+   * @param name
+   * @param timeRemaining
+   * @param hashSize - size of the transposition table in megabytes
+   */
+  public AI(int depth,int evaluatorToSelect, byte colour, String name, long timeRemaining, int hashSize) {
     super( name, colour, timeRemaining );
     this.depth = depth;
     if (evaluatorToSelect == 1) this.evaluator = new EasyEvaluator();
     else this.evaluator = new MediumEvaluator();
+    this.table = new TranspositionTable( hashSize );
+    this.orderer = new MoveOrderer();
+    this.moveBuffers = new int[ MAX_PLY + 1 ][ Moves.MAX_MOVES ];
+    this.pickers = newPickers( this.orderer );
+    this.nodeLimit = Long.MAX_VALUE;
+    this.deadline = Long.MAX_VALUE;
+    this.master = this;
+    this.nodesSearched = new AtomicLong();
+    this.parallelism = 1;
+    this.nullMovePruning = true;
+    this.lateMoveReductions = true;
+    this.futilityMargin = DEFAULT_FUTILITY_MARGIN;
+    this.reverseFutilityMargin = DEFAULT_REVERSE_FUTILITY_MARGIN;
+    this.razorMargin = DEFAULT_RAZOR_MARGIN;
+  }
+
+  /**
+   * Creates a helper that searches on another thread for 'master'. It shares the master's evaluator, transposition
+   * table and stop signal, but has its own move ordering state and node count.
+   * @param master
+   */
+  private AI( AI master ) {
+    super( master.getName(), master.colour );
+    this.depth = master.depth;
+    this.evaluator = master.evaluator;
+    this.table = master.table;
+    this.orderer = new MoveOrderer();
+    this.moveBuffers = new int[ MAX_PLY + 1 ][ Moves.MAX_MOVES ];
+    this.pickers = newPickers( this.orderer );
+    this.nodeLimit = Long.MAX_VALUE;
+    this.deadline = Long.MAX_VALUE;
+    this.master = master;
+    this.parallelism = 1;
+  }
+
+  /**
+   * Sets how many threads search the root moves. With a parallelism of 1, the default, the search runs on the
+   * calling thread and always chooses the same move for the same position.
+   * @param parallelism - the number of search threads
+   */
+  public void setParallelism( int parallelism ) {
+    setParallelism( parallelism, ROOT_SPLITTING );
+  }
+
+  /**
+   * Sets how many threads search and how they share the work.
+   *
+   * <p>With ROOT_SPLITTING the root moves are shared out between the threads. With LAZY_SMP the calling thread
+   * runs the normal search while parallelism - 1 helper threads search the same root at staggered depths; the
+   * threads only share results through the transposition table.</p>
+   * @param parallelism - the number of search threads
+   * @param mode - ROOT_SPLITTING or LAZY_SMP
+   */
+  public void setParallelism( int parallelism, int mode ) {
+    if ( this.pool != null ) {
+      this.pool.shutdown();
+    }
+    this.parallelism = Math.max( 1, parallelism );
+    this.parallelMode = mode;
+    this.pool = null;
+    this.workers = null;
+  }
+
+  /**
+   * Turns null move pruning on or off. It is on by default.
+   * @param enabled
+   */
+  public void setNullMovePruning( boolean enabled ) {
+    this.nullMovePruning = enabled;
+  }
+
+  /**
+   * Returns whether the search prunes with null moves.
+   * @return true if null move pruning is on
+   */
+  public boolean isNullMovePruning() {
+    return nullMovePruning;
+  }
+
+  /**
+   * Turns late move reductions on or off. They are on by default.
+   * @param enabled
+   */
+  public void setLateMoveReductions( boolean enabled ) {
+    this.lateMoveReductions = enabled;
+  }
+
+  /**
+   * Returns whether the search reduces late quiet moves.
+   * @return true if late move reductions are on
+   */
+  public boolean isLateMoveReductions() {
+    return lateMoveReductions;
+  }
+
+  /**
+   * Sets the futility pruning margin. At a node near the horizon whose static evaluation is below alpha by more
+   * than the margin times the remaining depth, quiet moves after the first are not searched. 0 turns it off.
+   * @param margin - the margin per ply, in units of Board material
+   */
+  public void setFutilityMargin( int margin ) {
+    this.futilityMargin = margin;
+  }
+
+  /**
+   * Returns the futility pruning margin.
+   * @return the margin per ply, in units of Board material
+   */
+  public int getFutilityMargin() {
+    return futilityMargin;
+  }
+
+  /**
+   * Sets the reverse futility pruning margin. A node near the horizon whose static evaluation is above beta by
+   * more than the margin times the remaining depth is cut off without searching its moves. 0 turns it off.
+   * @param margin - the margin per ply, in units of Board material
+   */
+  public void setReverseFutilityMargin( int margin ) {
+    this.reverseFutilityMargin = margin;
+  }
+
+  /**
+   * Returns the reverse futility pruning margin.
+   * @return the margin per ply, in units of Board material
+   */
+  public int getReverseFutilityMargin() {
+    return reverseFutilityMargin;
+  }
+
+  /**
+   * Sets the razoring margin. A node just above the horizon whose static evaluation is below alpha by more than
+   * the margin times the remaining depth is resolved by the quiescence search alone, unless that finds it better
+   * than alpha after all. 0 turns it off.
+   * @param margin - the margin per ply, in units of Board material
+   */
+  public void setRazorMargin( int margin ) {
+    this.razorMargin = margin;
+  }
+
+  /**
+   * Returns the razoring margin.
+   * @return the margin per ply, in units of Board material
+   */
+  public int getRazorMargin() {
+    return razorMargin;
+  }
+
+  /**
+   * Returns the number of threads that search.
+   * @return the parallelism
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns the transposition table shared by every search this AI makes, so that its statistics can be read.
+   * @return the transposition table
+   */
+  public TranspositionTable getTranspositionTable() {
+    return table;
+  }
+
+  /**
+   * Returns the move orderer used by the calling thread of the search. Worker threads have their own, so with
+   * parallelism above 1 its cutoff statistics only cover part of the search; getBetaCutoffs and
+   * getFirstMoveCutoffRate count every thread.
+   * @return the move orderer
+   */
+  public MoveOrderer getMoveOrderer() {
+    return orderer;
   }
   
   /**
    *
    * Given a board, getMove will return the best scoring move for the AI.
    *
-   * <p>It uses the alphaBetaNegamax algorithm to calculate the best move.</p>
+   * <p>The search deepens up to the depth the AI was created with. On a running clock it also stops once the time
+   * allotted to this move from the time remaining has been used up.</p>
    *
    * @param board
    * @return Best move for AI
    */
   public Move getMove( Board board ) {
-    Move bestMove = null;
+    return ( getMove( board, new SearchLimits( this.depth, allocateTime(), 0 ) ) );
+  }
+
+  /**
+   *
+   * Given a board, returns the best scoring move that can be found within the given limits.
+   *
+   * <p>It uses iterative deepening: the alphaBetaNegamax algorithm is run to depth 1, 2, 3... until the maximum
+   * depth has been searched or a budget runs out, and the best move of the last completed iteration is returned.
+   * Each iteration searches the previous best move first, inside an aspiration window around the previous score.
+   * The search is run on a single private copy of the board, making and taking back moves in place.</p>
+   *
+   * @param board
+   * @param limits - the depth, time and node budget for the search
+   * @return Best move for AI, or null if there are no valid moves
+   */
+  public Move getMove( Board board, SearchLimits limits ) {
+    return ( search( new Board( board ), limits, this.searchCount.incrementAndGet() ) );
+  }
+
+  /**
+   * Starts searching for a move on another thread, within the time allotted to this move from the clock.
+   * @param board
+   * @return the future best move for AI
+   * @see #requestMove(Board, SearchLimits)
+   */
+  public CompletableFuture<Move> requestMove( Board board ) {
+    return ( requestMove( board, new SearchLimits( this.depth, allocateTime(), 0 ) ) );
+  }
+
+  /**
+   * Starts searching for a move on another thread and returns at once.
+   *
+   * <p>The search runs on a copy of 'board', so the caller may change the board while it runs. It can be cut short
+   * in two ways. stopSearch ends it with the best move of the last completed iteration, which completes the future
+   * as a normal result. Cancelling the future also stops the search, and its move is thrown away. Either way the
+   * search thread notices within a node. An AI runs one search at a time, so a search requested while another is
+   * running waits for it to finish, and should normally be preceded by stopping it.</p>
+   * @param board
+   * @param limits - the depth, time and node budget for the search
+   * @return the future best move for AI, or null if there are no valid moves
+   */
+  public CompletableFuture<Move> requestMove( Board board, SearchLimits limits ) {
+    return ( startSearchThread( new Board( board ), limits, this.searchCount.incrementAndGet() ) );
+  }
+
+  /**
+   * Starts pondering: searching on the opponent's time for the reply to the move the opponent is expected to make.
+   *
+   * <p>The expected move is the best move the transposition table holds for 'board', which the search that chose
+   * this AI's last move normally left there. Its reply is searched without a time limit, filling the transposition
+   * table as it goes. If the opponent then plays getPonderMove, ponderHit turns the ponder search into the real one
+   * and the future gives this AI's move; otherwise the future should be cancelled, and the next search still
+   * profits from what the ponder search stored.</p>
+   * @param board - the position with the opponent to move
+   * @return the future reply to the expected move, or null if no move is expected
+   */
+  public CompletableFuture<Move> ponder( Board board ) {
+    Board copy = new Board( board );
+    int expected = TranspositionTable.bestMove( table.probe( copy.getHash() ) );
+    if ( expected != Moves.NONE ) {
+      expected = copy.legalMove( expected );
+    }
+    if ( expected == Moves.NONE ) {
+      this.ponderMove = null;
+      return ( null );
+    }
+
+    copy.makeMove( expected );
+    this.ponderMove = Moves.toMove( expected );
+    long id = this.searchCount.incrementAndGet();
+    synchronized ( this.stopLock ) {
+      this.ponderSearch = id;
+    }
+    return ( startSearchThread( copy, new SearchLimits( this.depth, 0, 0 ), id ) );
+  }
+
+  /**
+   * Returns the opponent's move that the last ponder search expects.
+   * @return the expected move, or null if the AI is not pondering
+   */
+  public Move getPonderMove() {
+    return ponderMove;
+  }
+
+  /**
+   * Tells the AI that the opponent played the expected move. The ponder search carries on as the search for this
+   * AI's move, keeping the depth it has reached, and from now on has the time allotted to this move from the clock.
+   * The time remaining should be set before calling this.
+   */
+  public void ponderHit() {
+    synchronized ( this.stopLock ) {
+      this.ponderHitSearch = this.ponderSearch;
+      if ( this.runningSearch == this.ponderSearch ) {
+        startClock( allocateTime() );
+      }
+    }
+  }
+
+  /**
+   * Runs a search on a new daemon thread.
+   * @param copy - a private copy of the position to search
+   * @param limits - the depth, time and node budget for the search
+   * @param id - the number of the search
+   * @return the future best move for AI, or null if there are no valid moves
+   */
+  private CompletableFuture<Move> startSearchThread( final Board copy, final SearchLimits limits, final long id ) {
+    final CompletableFuture<Move> result = new CompletableFuture<Move>();
+    result.whenComplete( new BiConsumer<Move, Throwable>() {
+      public void accept( Move move, Throwable error ) {
+        if ( result.isCancelled() ) cancelSearch( id );
+      }
+    } );
+
+    Thread thread = new Thread( new Runnable() {
+      public void run() {
+        try {
+          result.complete( search( copy, limits, id ) );
+        } catch ( RuntimeException e ) {
+          result.completeExceptionally( e );
+        }
+      }
+    }, getName() + " search" );
+    thread.setDaemon( true );
+    thread.start();
+    return ( result );
+  }
+
+  /**
+   * Tells the running search, and any requested but not yet started, to stop as soon as possible and return the
+   * best move found so far. Searches requested afterwards run normally.
+   */
+  public void stopSearch() {
+    stopSearches( this.searchCount.get() );
+  }
+
+  /**
+   * Stops every search numbered up to 'last', whether it is running or yet to start.
+   * @param last - the number of the last search to stop
+   */
+  private void stopSearches( long last ) {
+    synchronized ( this.stopLock ) {
+      this.lastStoppedSearch = Math.max( this.lastStoppedSearch, last );
+      if ( this.runningSearch <= last ) {
+        this.stopped = true;
+      }
+    }
+  }
+
+  /**
+   * Stops a single search, whether it is running or yet to start, leaving any other search running.
+   * @param id - the number of the search to stop
+   */
+  private void cancelSearch( long id ) {
+    synchronized ( this.stopLock ) {
+      if ( this.runningSearch == id ) {
+        this.stopped = true;
+      } else {
+        this.cancelledSearches.add( id );
+      }
+    }
+  }
+
+  /**
+   * Runs the iterative deepening search described at getMove.
+   * @param copy - a private copy of the position to search
+   * @param limits - the depth, time and node budget for the search
+   * @param id - the number of the search, which stops at once if it was stopped before it could start
+   * @return Best move for AI, or null if there are no valid moves
+   */
+  private synchronized Move search( Board copy, SearchLimits limits, long id ) {
+    synchronized ( this.stopLock ) {
+      this.runningSearch = id;
+      boolean cancelled = this.cancelledSearches.remove( id );
+      this.stopped = cancelled || id <= this.lastStoppedSearch;
+      // A ponder hit may arrive before its search has started.
+      startClock( id == this.ponderHitSearch ? allocateTime() : limits.getMoveTime() );
+    }
+
+    int[] moves = new int[ Moves.MAX_MOVES ];
+    int count = copy.generateMoves( moves );
+    if ( count == 0 ) return ( null );
+
+    long nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+    this.nodesSearched.set( 0 );
+    startSearch( nodeLimit );
+    if ( this.parallelism > 1 ) {
+      if ( this.pool == null ) {
+        this.pool = new ForkJoinPool( this.parallelism );
+        // Under Lazy SMP the calling thread is one of the searchers, so it needs one worker fewer.
+        this.workers = new AI[ this.parallelMode == LAZY_SMP ? this.parallelism - 1 : this.parallelism ];
+        for ( int i = 0; i < this.workers.length; i++ ) {
+          this.workers[ i ] = new AI( this );
+        }
+      }
+      for ( AI worker : this.workers ) {
+        worker.startSearch( nodeLimit );
+      }
+    }
+
+    moveToFront( moves, count, TranspositionTable.bestMove( table.probe( copy.getHash() ) ) );
+    boolean splitRoot = this.parallelism > 1 && this.parallelMode == ROOT_SPLITTING;
+    List<ForkJoinTask<Void>> helpers = new ArrayList<ForkJoinTask<Void>>();
+    if ( this.parallelism > 1 && this.parallelMode == LAZY_SMP ) {
+      for ( int i = 0; i < this.workers.length; i++ ) {
+        helpers.add( this.pool.submit( lazySmpHelper( this.workers[ i ], copy, moves, count, limits.getDepth(),
+                                                      i + 1 ) ) );
+      }
+    }
+
+    int bestMove = moves[ 0 ];
+    int score = 0;
+    for ( int iteration = 1; iteration <= limits.getDepth(); iteration++ ) {
+      int move = splitRoot ? searchRootParallel( copy, moves, count, iteration )
+                           : searchAspiration( copy, moves, count, iteration, score );
+      if ( isStopped() ) break;
+
+      bestMove = move;
+      score = this.rootScore;
+      moveToFront( moves, count, move );
+
+      // The next iteration takes several times as long as this one, so do not start what cannot be finished.
+      if ( this.moveTime > 0 && System.currentTimeMillis() - this.searchStart > this.moveTime / 2 ) break;
+    }
+
+    if ( !helpers.isEmpty() ) {
+      this.stopped = true;
+      for ( ForkJoinTask<Void> helper : helpers ) {
+        helper.join();
+      }
+    }
+
+    return ( Moves.toMove( bestMove ) );
+  }
+
+  /**
+   * Creates a Lazy SMP helper: an iterative deepening search of the root on its own copy of the board that runs
+   * until the master search stops it. Its only output is what it stores in the shared transposition table, which
+   * the master finds as cutoffs and best moves.
+   *
+   * <p>So that the helpers do not all search the same tree in step with the master, each starts at a different
+   * depth and searches the root moves after the first in a different order.</p>
+   * @param worker - the AI that searches for the helper
+   * @param board - the root position
+   * @param rootMoves - the valid moves in the root position
+   * @param count - the number of root moves
+   * @param maxDepth - the deepest iteration to search
+   * @param helper - the number of the helper, counting from 1
+   * @return the helper task
+   */
+  private Callable<Void> lazySmpHelper( final AI worker, Board board, int[] rootMoves, final int count,
+                                        final int maxDepth, int helper ) {
+    final Board helperBoard = new Board( board );
+    final int[] moves = rootMoves.clone();
+    final int firstDepth = 1 + helper % 3;
+    if ( count > 2 ) {
+      rotate( moves, 1, count, helper % ( count - 1 ) );
+    }
+
+    return new Callable<Void>() {
+      public Void call() {
+        for ( int iteration = firstDepth; iteration <= maxDepth; iteration++ ) {
+          int move = worker.searchRoot( helperBoard, moves, count, iteration, -INFINITY, INFINITY );
+          if ( move == Moves.NONE ) break;
+          moveToFront( moves, count, move );
+        }
+        return ( null );
+      }
+    };
+  }
+
+  /**
+   * Searches the root to the given depth inside an aspiration window around the score of the previous iteration.
+   * If the score falls outside the window the root is searched again with a wider one, until the score lands
+   * inside it. The first iteration, and any iteration after a mate score, uses the full window.
+   * @param board - the position to search
+   * @param moves - the valid moves in the position as packed moves, in the order to search them
+   * @param count - the number of moves
+   * @param depth
+   * @param previousScore - the score of the previous iteration
+   * @return the best move, or Moves.NONE if the search was stopped before it finished
+   */
+  private int searchAspiration( Board board, int[] moves, int count, int depth, int previousScore ) {
+    long delta = ASPIRATION_WINDOW;
+    int alpha = -INFINITY;
+    int beta = INFINITY;
+    if ( depth > 1 && Math.abs( previousScore ) < MATE_THRESHOLD ) {
+      alpha = window( previousScore - delta );
+      beta = window( previousScore + delta );
+    }
+
+    while ( true ) {
+      int move = searchRoot( board, moves, count, depth, alpha, beta );
+      if ( move == Moves.NONE ) return ( Moves.NONE );
+
+      int score = this.rootScore;
+      delta *= ASPIRATION_GROWTH;
+      if ( score <= alpha && alpha > -INFINITY ) {
+        alpha = window( score - delta );
+      } else if ( score >= beta && beta < INFINITY ) {
+        beta = window( score + delta );
+        moveToFront( moves, count, move );
+      } else {
+        return ( move );
+      }
+    }
+  }
+
+  /**
+   * Clamps a bound of an aspiration window to the full window.
+   * @param bound
+   * @return the bound, no further from zero than INFINITY
+   */
+  private static int window( long bound ) {
+    return ( (int)Math.max( -INFINITY, Math.min( INFINITY, bound ) ) );
+  }
+
+  /**
+   * Searches every root move to the given depth with principal variation search: the first move with the window
+   * (alpha, beta), and the rest with a null window that only proves them no better than the best so far. A move
+   * that beats the null window is searched again with the full window to get its score. The score of the best
+   * move is left in rootScore; it is no higher than alpha if every move failed low, and at least beta if a move
+   * failed high, in which case the remaining moves are not searched.
+   * @param board - the position to search
+   * @param moves - the valid moves in the position as packed moves, in the order to search them
+   * @param count - the number of moves
+   * @param depth
+   * @param alpha
+   * @param beta
+   * @return the best move, or Moves.NONE if the search was stopped before it finished
+   */
+  private int searchRoot( Board board, int[] moves, int count, int depth, int alpha, int beta ) {
+    int bestMove = moves[ 0 ];
+    int bestScore = -INFINITY;
+    int originalAlpha = alpha;
 
-    int bestScore = Integer.MIN_VALUE;
-    for ( Move move : board.getValidMoves() ) {
-      Board copy = new Board (board);
-      copy.makeMove ( move );
-      int score = -alphaBetaNegamax( copy, this.depth, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1 );
+    for ( int i = 0; i < count; i++ ) {
+      int move = moves[ i ];
+      board.makeMove( move );
+      int score;
+      if ( i == 0 ) {
+        score = -alphaBetaNegamax( board, depth, 1, -beta, -alpha );
+      } else {
+        score = -alphaBetaNegamax( board, depth, 1, -alpha - 1, -alpha );
+        if ( score > alpha && score < beta ) {
+          score = -alphaBetaNegamax( board, depth, 1, -beta, -alpha );
+        }
+      }
+      board.unmakeMove();
+      if ( isStopped() ) return ( Moves.NONE );
       if ( score > bestScore ) {
-	bestScore = score;
-	bestMove = move;
+        bestScore = score;
+        bestMove = move;
       }
+      if ( score >= beta ) break;
+      if ( score > alpha ) alpha = score;
     }
 
+    this.rootScore = bestScore;
+    if ( bestScore >= beta ) {
+      table.store( board.getHash(), depth + 1, TranspositionTable.LOWER_BOUND, bestScore, bestMove );
+    } else if ( bestScore > originalAlpha ) {
+      table.store( board.getHash(), depth + 1, TranspositionTable.EXACT, bestScore, bestMove );
+    }
     return ( bestMove );
   }
 
+  /**
+   * Searches every root move to the given depth, sharing the moves out between the worker threads.
+   *
+   * <p>The first move, which is usually the best, is searched alone to get a score the others must beat (the
+   * "young brothers wait" rule). The remaining moves are then handed out one at a time to the workers, each
+   * searching on its own copy of the board. Every move is first searched with a null window at the best score found
+   * so far by any worker, and only searched again with a full window if it beats that score.</p>
+   *
+   * @param board - the position to search
+   * @param moves - the valid moves in the position as packed moves, in the order to search them
+   * @param count - the number of moves
+   * @param depth
+   * @return the best move, or Moves.NONE if the search was stopped before it finished
+   */
+  private int searchRootParallel( Board board, final int[] moves, final int count, final int depth ) {
+
+    int firstMove = moves[ 0 ];
+    board.makeMove( firstMove );
+    int firstScore = -alphaBetaNegamax( board, depth, 1, -INFINITY, INFINITY );
+    board.unmakeMove();
+    if ( isStopped() ) return ( Moves.NONE );
+
+    final RootResult best = new RootResult( firstMove, firstScore );
+    final AtomicInteger nextMove = new AtomicInteger( 1 );
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for ( final AI worker : this.workers ) {
+      final Board workerBoard = new Board( board );
+      tasks.add( new Callable<Void>() {
+        public Void call() {
+          for ( int i = nextMove.getAndIncrement(); i < count; i = nextMove.getAndIncrement() ) {
+            int move = moves[ i ];
+            workerBoard.makeMove( move );
+            int bound = best.getScore();
+            int score = -worker.alphaBetaNegamax( workerBoard, depth, 1, -bound - 1, -bound );
+            if ( score > bound ) {
+              score = -worker.alphaBetaNegamax( workerBoard, depth, 1, -INFINITY, -bound );
+            }
+            workerBoard.unmakeMove();
+            if ( worker.isStopped() ) return ( null );
+            best.offer( move, score );
+          }
+          return ( null );
+        }
+      } );
+    }
+    this.pool.invokeAll( tasks );
+    if ( isStopped() ) return ( Moves.NONE );
+
+    this.rootScore = best.getScore();
+    table.store( board.getHash(), depth + 1, TranspositionTable.EXACT, best.getScore(), best.getMove() );
+    return ( best.getMove() );
+  }
+
+  /**
+   * Creates a move picker for each ply, all ordering moves with the same move orderer.
+   * @param orderer
+   * @return the move pickers, indexed by ply
+   */
+  private static MovePicker[] newPickers( MoveOrderer orderer ) {
+    MovePicker[] pickers = new MovePicker[ MAX_PLY ];
+    for ( int i = 0; i < pickers.length; i++ ) {
+      pickers[ i ] = new MovePicker( orderer );
+    }
+    return pickers;
+  }
+
+  /**
+   * Starts the clock of the search from now.
+   * @param moveTime - the time for the move in milliseconds, or 0 for no limit
+   */
+  private void startClock( long moveTime ) {
+    long now = System.currentTimeMillis();
+    this.searchStart = now;
+    this.moveTime = moveTime;
+    this.deadline = moveTime > 0 ? now + moveTime : Long.MAX_VALUE;
+  }
+
+  /**
+   * Resets the per search state of this AI.
+   * @param nodeLimit - the number of nodes after which the search must stop
+   */
+  private void startSearch( long nodeLimit ) {
+    this.nodeLimit = nodeLimit;
+    this.nodes = 0;
+    this.futilityPrunes = 0;
+    this.reverseFutilityPrunes = 0;
+    this.razorPrunes = 0;
+    this.orderer.newSearch();
+  }
+
+  /**
+   * Has the search been told to stop?
+   * @return true if the search should unwind without storing any more results
+   */
+  private boolean isStopped() {
+    return master.stopped;
+  }
+
+  /**
+   * Works out how long to spend on the next move from the time left on the clock.
+   * @return the time for the move in milliseconds, or 0 if the game is untimed
+   */
+  private long allocateTime() {
+    long timeRemaining = getTimeRemaining();
+    if ( timeRemaining <= 0 ) return ( 0 );
+
+    long moveTime = timeRemaining / MOVES_TO_GO;
+    return ( Math.max( MINIMUM_MOVE_TIME, Math.min( moveTime, timeRemaining / 2 ) ) );
+  }
+
+  /**
+   * Counts a visited position and stops the search if the time or node budget has run out.
+   */
+  private void countNode() {
+    if ( ( ++this.nodes & LIMIT_CHECK_INTERVAL ) == 0 ) {
+      long searched = master.nodesSearched.addAndGet( LIMIT_CHECK_INTERVAL + 1 );
+      if ( searched >= this.nodeLimit || System.currentTimeMillis() >= master.deadline ) {
+        master.stopped = true;
+      }
+    }
+  }
+
+  /**
+   * How many positions did the last search visit, counting those visited by the worker threads?
+   * @return the node count
+   */
+  public long getNodes() {
+    long total = nodes;
+    if ( workers != null ) {
+      for ( AI worker : workers ) {
+        total += worker.nodes;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * How many quiet moves did futility pruning skip in the last search, counting the worker threads?
+   * @return the number of moves not searched
+   */
+  public long getFutilityPrunes() {
+    long total = futilityPrunes;
+    if ( workers != null ) {
+      for ( AI worker : workers ) {
+        total += worker.futilityPrunes;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * How many nodes did reverse futility pruning cut off in the last search, counting the worker threads?
+   * @return the number of nodes whose moves were not searched
+   */
+  public long getReverseFutilityPrunes() {
+    long total = reverseFutilityPrunes;
+    if ( workers != null ) {
+      for ( AI worker : workers ) {
+        total += worker.reverseFutilityPrunes;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * How many nodes did razoring resolve with the quiescence search alone in the last search, counting the worker
+   * threads?
+   * @return the number of nodes whose moves were not searched
+   */
+  public long getRazorPrunes() {
+    long total = razorPrunes;
+    if ( workers != null ) {
+      for ( AI worker : workers ) {
+        total += worker.razorPrunes;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * How many beta cutoffs were there in the last search, counting the worker threads?
+   * @return the number of beta cutoffs
+   */
+  public long getBetaCutoffs() {
+    long total = orderer.getBetaCutoffs();
+    if ( workers != null ) {
+      for ( AI worker : workers ) {
+        total += worker.orderer.getBetaCutoffs();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * How many beta cutoffs in the last search were caused by the first move searched, counting the worker threads?
+   * @return the number of first move beta cutoffs
+   */
+  public long getFirstMoveBetaCutoffs() {
+    long total = orderer.getFirstMoveBetaCutoffs();
+    if ( workers != null ) {
+      for ( AI worker : workers ) {
+        total += worker.orderer.getFirstMoveBetaCutoffs();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * What fraction of the beta cutoffs in the last search were caused by the first move searched, counting the
+   * worker threads?
+   * @return the first move cutoff rate, or 0 if there were no cutoffs
+   */
+  public double getFirstMoveCutoffRate() {
+    long cutoffs = getBetaCutoffs();
+    return ( cutoffs == 0 ? 0 : (double) getFirstMoveBetaCutoffs() / cutoffs );
+  }
+
   /**
    * <b>Alpha Beta Negamax </b><p>
    *
    * Utilises the Negamax algorithm with Alpha Beta pruning to calculate the best move</p><p>
    *
-   * This is normally called with  alphaBetaNegamax(board, depth, +ve infinity, -ve infinity)
-   * The calling method handles the first move made by the AI.</p>
+   * This is normally called on the position after a root move with alphaBetaNegamax(board, depth, 1, -ve infinity,
+   * +ve infinity). The calling method handles the first move made by the AI.</p><p>
+   *
+   * Positions at the horizon are passed to the quiescence search, which only generates captures. Interior nodes
+   * take their moves from a MovePicker, which generates them in stages, so a node that cuts off on the hash move or
+   * a capture never generates its quiet moves.</p><p>
+   *
+   * It is a principal variation search: the first move is searched with the full window, and the others with a null
+   * window that only proves them worse than the best move so far. A move that turns out better is searched again
+   * with the full window.</p><p>
+   *
+   * A position that repeats one earlier in the game or the search, or that reaches the fifty move limit, is scored
+   * as a draw without being searched, so the AI neither shuffles pieces in a won position nor walks into a
+   * repetition when it stands better. Checkmate on the move that reaches the limit still counts as mate.</p><p>
+   *
+   * Two selective techniques cut the tree down, each of which can be turned off. Null move pruning lets the
+   * opponent move twice in a row: if a reduced search still fails high, the node is cut off without searching its
+   * moves. It is not tried in check, where passing is illegal, nor when the side to move has only pawns, where
+   * passing can be the best move (zugzwang). Late move reductions search quiet moves that come late in the move
+   * order less deeply, and search a move again to the full depth if the reduced search finds it better than
+   * alpha.</p><p>
    *
-   * @param board - board to evaluate and make next move on
+   * Close to the horizon, outside the principal variation and when not in check, the cheap static evaluation
+   * decides whether a node is worth searching. Reverse futility pruning cuts off a node that stands far above beta.
+   * Razoring hands a node that stands far below alpha to the quiescence search, and futility pruning skips the
+   * quiet moves of such a node, since they are unlikely to make up the difference.</p>
+   *
+   * @param board - board to evaluate and make next move on, left unchanged when the method returns
    * @param depth - how much further to traverse the tree before returning
+   * @param ply - the number of plies from the root
    * @param alpha
    * @param beta
    * @return Best move for a given board
    */
-  public int alphaBetaNegamax( Board board, int depth, int alpha, int beta ) {
-    if ( board.isCheckmate() ) {
-      return ( Integer.MIN_VALUE + 1 + this.depth - depth );
-    } else if ( board.isStalemate() ) {
-      return 0;
-    } else if ( depth <= 0 ) {
-      return ( evaluator.evaluate( board ) );
+  public int alphaBetaNegamax( Board board, int depth, int ply, int alpha, int beta ) {
+    if ( board.isRepetition() ) {
+      return ( DRAW_SCORE );
+    }
+    if ( board.isFiftyMoveDraw() ) {
+      return ( fiftyMoveScore( board, ply ) );
+    }
+    if ( depth <= 0 || ply >= MAX_PLY ) {
+      return ( quiescence( board, ply, alpha, beta ) );
     }
 
+    countNode();
+    if ( isStopped() ) return ( 0 );
+
+    long hash = board.getHash();
+    long entry = table.probe( hash );
+    if ( entry != 0 && TranspositionTable.depth( entry ) >= depth ) {
+      int score = scoreFromTable( TranspositionTable.score( entry ), ply );
+      switch ( TranspositionTable.bound( entry ) ) {
+        case TranspositionTable.EXACT:
+          return ( score );
+        case TranspositionTable.LOWER_BOUND:
+          if ( score >= beta ) return ( score );
+          break;
+        case TranspositionTable.UPPER_BOUND:
+          if ( score <= alpha ) return ( score );
+          break;
+      }
+    }
+
+    boolean inCheck = board.kingInCheck();
+    boolean futile = false;
+    if ( depth <= FRONTIER_DEPTH && !inCheck && beta == alpha + 1 && Math.abs( beta ) < MATE_THRESHOLD ) {
+      int staticScore = evaluator.evaluateFast( board );
+      int weight = evaluator.getMaterialWeight();
+
+      int reverseMargin = master.reverseFutilityMargin * depth * weight;
+      if ( master.reverseFutilityMargin > 0 && staticScore - reverseMargin >= beta ) {
+        this.reverseFutilityPrunes++;
+        return ( staticScore - reverseMargin );
+      }
+
+      if ( master.razorMargin > 0 && depth <= RAZOR_DEPTH
+           && staticScore + master.razorMargin * depth * weight <= alpha ) {
+        int score = quiescence( board, ply, alpha, beta );
+        if ( isStopped() ) return ( 0 );
+        if ( score <= alpha ) {
+          this.razorPrunes++;
+          return ( score );
+        }
+      }
+
+      futile = master.futilityMargin > 0 && staticScore + master.futilityMargin * depth * weight <= alpha;
+    }
+
+    if ( master.nullMovePruning && depth >= NULL_MOVE_MIN_DEPTH && !inCheck && !board.isAfterNullMove()
+         && Math.abs( beta ) < MATE_THRESHOLD && board.hasNonPawnMaterial( board.getTurnColour() ) ) {
+      int reduction = depth >= NULL_MOVE_DEEP_DEPTH ? NULL_MOVE_REDUCTION + 1 : NULL_MOVE_REDUCTION;
+      board.makeNullMove();
+      int score = -alphaBetaNegamax( board, depth - 1 - reduction, ply + 1, -beta, -beta + 1 );
+      board.unmakeMove();
+      if ( isStopped() ) return ( 0 );
+      if ( score >= beta ) return ( beta );
+    }
+
+    MovePicker picker = this.pickers[ ply ];
+    picker.init( board, TranspositionTable.bestMove( entry ), ply );
+
+    int bestMove = Moves.NONE;
     int score = Integer.MIN_VALUE + 1;
-    for ( Move move : board.getValidMoves() ) {
-      Board child = new Board( board );
-      child.makeMove( move );
-      score = -alphaBetaNegamax( child, depth - 1, -beta, -alpha );
+    int searched = 0;
+    for ( int move = picker.next(); move != Moves.NONE; move = picker.next() ) {
+      board.makeMove( move );
+      if ( futile && searched > 0 && !Moves.isCapture( move ) && Moves.promotion( move ) == Pieces.EMPTY
+           && !board.kingInCheck() ) {
+        board.unmakeMove();
+        this.futilityPrunes++;
+        continue;
+      }
+      if ( searched == 0 ) {
+        score = -alphaBetaNegamax( board, depth - 1, ply + 1, -beta, -alpha );
+      } else {
+        int reduction = lateMoveReduction( board, move, depth, searched, inCheck );
+        score = -alphaBetaNegamax( board, depth - 1 - reduction, ply + 1, -alpha - 1, -alpha );
+        if ( score > alpha && reduction > 0 ) {
+          score = -alphaBetaNegamax( board, depth - 1, ply + 1, -alpha - 1, -alpha );
+        }
+        if ( score > alpha && score < beta ) {
+          score = -alphaBetaNegamax( board, depth - 1, ply + 1, -beta, -alpha );
+        }
+      }
+      board.unmakeMove();
+      if ( isStopped() ) return ( 0 );
+      if ( score >= beta ) {
+        orderer.cutoff( board, move, depth, ply, searched );
+        table.store( hash, depth, TranspositionTable.LOWER_BOUND, scoreToTable( score, ply ), move );
+        return ( score );
+      }
+      if ( score > alpha ) {
+        alpha = score;
+        bestMove = move;
+      }
+      searched++;
+    }
+    if ( searched == 0 ) {
+      return ( inCheck ? -INFINITY + ply : 0 );
+    }
+
+    table.store( hash, depth, bestMove == Moves.NONE ? TranspositionTable.UPPER_BOUND : TranspositionTable.EXACT,
+                 scoreToTable( alpha, ply ), bestMove );
+    return ( alpha );
+  }
+
+  /**
+   * Scores a position that has reached the fifty move limit. It is a draw unless the side to move has been
+   * checkmated, since checkmate on the move that reaches the limit still wins.
+   * @param board - the position at the limit
+   * @param ply - the number of plies from the root
+   * @return the draw score, or the mated score if the side to move is checkmated
+   */
+  private int fiftyMoveScore( Board board, int ply ) {
+    if ( !board.kingInCheck() || board.generateMoves( this.moveBuffers[ ply ] ) > 0 ) {
+      return ( DRAW_SCORE );
+    }
+    return ( -INFINITY + ply );
+  }
+
+  /**
+   * Works out how many plies shallower to search a move that has just been made. Only quiet moves that come late
+   * in the move order and do not give check are reduced, and none at all when the side that moved was in check.
+   * @param board - the position after the move
+   * @param move - the packed move
+   * @param depth - the depth of the node the move was made from
+   * @param searched - how many moves of the node were searched before this one
+   * @param inCheck - whether the side that moved was in check
+   * @return the number of plies to reduce the search by
+   */
+  private int lateMoveReduction( Board board, int move, int depth, int searched, boolean inCheck ) {
+    if ( !master.lateMoveReductions || depth < LMR_MIN_DEPTH || searched < LMR_MIN_MOVES || inCheck
+         || Moves.isCapture( move ) || Moves.promotion( move ) != Pieces.EMPTY || board.kingInCheck() ) {
+      return ( 0 );
+    }
+    return ( searched >= LMR_DEEP_MOVES ? 2 : 1 );
+  }
+
+  /**
+   * <b>Quiescence Search</b><p>
+   *
+   * Resolves the captures available at the horizon so that the evaluator is only asked about quiet positions.</p><p>
+   *
+   * The side to move may stand pat, accepting the static evaluation instead of capturing. Captures that could not
+   * raise the score to alpha even with a margin to spare, counting what a promotion gains, are skipped (delta
+   * pruning), as are captures that static exchange evaluation shows to lose material.</p><p>
+   *
+   * A side in check may not stand pat, since the static evaluation says nothing about whether it can escape. All
+   * its evasions are searched without pruning, and a position with none is scored as mate.</p>
+   *
+   * @param board - board to evaluate, left unchanged when the method returns
+   * @param ply - the number of plies from the root
+   * @param alpha
+   * @param beta
+   * @return the score of the position once the captures have been played out
+   */
+  private int quiescence( Board board, int ply, int alpha, int beta ) {
+    countNode();
+    if ( isStopped() ) return ( 0 );
+
+    boolean inCheck = board.kingInCheck();
+    int standPat = 0;
+    if ( ply >= MAX_PLY ) return ( evaluator.evaluate( board ) );
+    if ( !inCheck ) {
+      standPat = evaluator.evaluate( board );
+      if ( standPat >= beta ) return ( standPat );
+      if ( standPat > alpha ) alpha = standPat;
+    }
+
+    int[] moves = this.moveBuffers[ ply ];
+    int count = inCheck ? board.generateMoves( moves ) : board.generateCaptures( moves );
+    if ( inCheck && count == 0 ) {
+      return ( -INFINITY + ply );
+    }
+    orderer.order( board, moves, count, 0, ply );
+    for ( int i = 0; i < count; i++ ) {
+      int move = moves[ i ];
+      if ( !inCheck ) {
+        int gain = board.captureValue( move );
+        if ( Moves.promotion( move ) != Pieces.EMPTY ) {
+          gain += Board.pieceValue( Moves.promotion( move ) ) - Board.pieceValue( Pieces.PAWN );
+        }
+        if ( standPat + ( gain + DELTA_MARGIN ) * evaluator.getMaterialWeight() <= alpha ) {
+          continue;
+        }
+        if ( board.captureValue( move ) < Board.pieceValue( board.pieceTypeAt( Moves.from( move ) ) )
+             && board.see( move ) < 0 ) {
+          continue;
+        }
+      }
+
+      board.makeMove( move );
+      int score = -quiescence( board, ply + 1, -beta, -alpha );
+      board.unmakeMove();
+      if ( isStopped() ) return ( 0 );
       if ( score >= beta ) return ( score );
       if ( score > alpha ) alpha = score;
     }
@@ -94,7 +1163,95 @@ public class AI extends Player {
     return ( alpha );
   }
 
+  /**
+   * Swaps a move, if it is in the list, with the first move so that it is searched first. Moves are compared
+   * without their flags, so 'move' may come from the transposition table.
+   * @param moves - the packed moves to reorder
+   * @param count - the number of moves
+   * @param move - the move to put first, or Moves.NONE
+   */
+  private static void moveToFront( int[] moves, int count, int move ) {
+    if ( move == Moves.NONE ) return;
+
+    for ( int i = 0; i < count; i++ ) {
+      if ( ( moves[ i ] & Moves.KEY_MASK ) == ( move & Moves.KEY_MASK ) ) {
+        int found = moves[ i ];
+        moves[ i ] = moves[ 0 ];
+        moves[ 0 ] = found;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Rotates moves[ from ] to moves[ to - 1 ] left by 'distance' places.
+   * @param moves
+   * @param from - the first index to rotate
+   * @param to - one past the last index to rotate
+   * @param distance - how many places to rotate by, less than to - from
+   */
+  private static void rotate( int[] moves, int from, int to, int distance ) {
+    int[] rotated = new int[ to - from ];
+    for ( int i = 0; i < rotated.length; i++ ) {
+      rotated[ i ] = moves[ from + ( i + distance ) % rotated.length ];
+    }
+    System.arraycopy( rotated, 0, moves, from, rotated.length );
+  }
+
+  /**
+   * Mate scores count plies from the root. Converts one to count plies from the node at 'ply' so that it stays
+   * correct when the position is reached again by a different path.
+   * @param score
+   * @param ply
+   * @return the score to store in the transposition table
+   */
+  private static int scoreToTable( int score, int ply ) {
+    if ( score > MATE_THRESHOLD ) return ( score + ply );
+    if ( score < -MATE_THRESHOLD ) return ( score - ply );
+    return ( score );
+  }
+
+  /**
+   * Undoes scoreToTable for a score read back at 'ply'.
+   * @param score
+   * @param ply
+   * @return the score relative to the root
+   */
+  private static int scoreFromTable( int score, int ply ) {
+    if ( score > MATE_THRESHOLD ) return ( score - ply );
+    if ( score < -MATE_THRESHOLD ) return ( score + ply );
+    return ( score );
+  }
+
   public boolean isHuman() {
     return false;
   }
+
+  /**
+   * The best root move found so far by any of the threads of a parallel search.
+   */
+  private static class RootResult {
+    private int move;
+    private int score;
+
+    RootResult( int move, int score ) {
+      this.move = move;
+      this.score = score;
+    }
+
+    synchronized void offer( int move, int score ) {
+      if ( score > this.score ) {
+        this.move = move;
+        this.score = score;
+      }
+    }
+
+    synchronized int getMove() {
+      return move;
+    }
+
+    synchronized int getScore() {
+      return score;
+    }
+  }
 }
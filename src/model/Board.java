@@ -4,19 +4,44 @@ import static lookup.Pieces.*;
 import static lookup.Masks.*;
 import static lookup.Coordinates.*;
 import static lookup.PieceTables.*;
+import static lookup.Zobrist.*;
+import static lookup.Bitboards.*;
+import static lookup.Attacks.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A Chess Board implementation using the 0x88 board representation.
  *
+ * <p>Alongside the 0x88 squares the board keeps a bitboard for each type and colour of piece and for the pieces of
+ * each colour, which are used to find the pieces of a player and the squares they attack without walking the
+ * board.</p>
+ *
  * @author Gary Blackwood
  */
 public class Board {
 
+  // The kinds of move to generate.
+  private static final int ALL_MOVES = 0;
+  private static final int CAPTURES = 1;
+  private static final int QUIETS = 2;
+  // No piece has more legal moves than this.
+  private static final int MAX_PIECE_MOVES = 32;
+  // The number of halfmoves without a capture or pawn move after which the game is drawn.
+  private static final int FIFTY_MOVE_LIMIT = 100;
+
+  // The squares of the knights and bishops at the start of the game, on the first rank.
+  private static final int[] MINOR_PIECE_POSITIONS = { B1, C1, F1, G1 };
+
   private byte[] squares;
+  private long[] pieces;
+  private long[] colourPieces;
+  // The position table scores of each player's pieces, summed with the opening and the later queen table.
+  private int[] openingPositionScores;
+  private int[] laterPositionScores;
   private byte turnColour;
-  private Move previousMove;
+  private int previousMove;
   private int whiteKingPosition;
   private int blackKingPosition;
   private ArrayList<Move> validMoves;
@@ -24,6 +49,18 @@ public class Board {
   private ArrayList<Byte> blackPiecesCaptured;
   private int score;
   private int amountOfMoves;
+  // The number of halfmoves since the last capture or pawn move.
+  private int halfmoveClock;
+  private long hash;
+  // The hashes of the positions before each move made, oldest first, for finding repeated positions.
+  private long[] hashHistory;
+  private int historyCount;
+  private Undo[] undoStack;
+  private int undoCount;
+  // The running material balances of a static exchange evaluation, kept to avoid allocating one per call.
+  private int[] exchangeGains = new int[ 32 ];
+  // The moves of a single piece, kept to avoid allocating a buffer each time a move is checked for legality.
+  private int[] pieceMoves = new int[ MAX_PIECE_MOVES ];
 
   /**
    * Initialise and create the board to contain chess pieces arranged in an order such that the resulting positions represent
@@ -40,32 +77,127 @@ public class Board {
                                BROOK, BKNIGHT, BBISHOP, BQUEEN, BKING, BBISHOP, BKNIGHT, BROOK, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY };
 
     this.turnColour = WHITE;
-    this.previousMove = null;
+    initBitboards();
+    this.previousMove = Moves.NONE;
     this.whiteKingPosition = E1;
     this.blackKingPosition = E8;
-    this.validMoves = generateValidMoves();
+    this.validMoves = null;
     this.whitePiecesCaptured = new ArrayList<Byte>();
     this.blackPiecesCaptured = new ArrayList<Byte>();
     this.score = 0;
     this.amountOfMoves=0;
+    this.halfmoveClock = 0;
+    this.hash = computeHash();
+    this.hashHistory = new long[ 0 ];
+    this.historyCount = 0;
+    this.undoStack = new Undo[ 0 ];
+    this.undoCount = 0;
+  }
+
+  /**
+   * Construct a new chess board from an arbitrary position, such as one read by the FENParser.
+   *
+   * <p>Pieces that have not moved must not have their MOVED bit set: pawns that can still make a double step,
+   * and kings and rooks that can still castle. No pieces are recorded as captured.</p>
+   *
+   * @param squares          The 0x88 array of chess board squares.
+   * @param turnColour       The colour of the player to move.
+   * @param previousMove     The last move made, which decides whether an en passant capture is possible, or null.
+   * @param amountOfMoves    The number of moves made to reach the position.
+   * @param halfmoveClock    The number of halfmoves since the last capture or pawn move.
+   */
+  public Board( byte[] squares, byte turnColour, Move previousMove, int amountOfMoves, int halfmoveClock ) {
+    this.squares = squares.clone();
+    this.turnColour = turnColour;
+    initBitboards();
+    this.previousMove = Moves.NONE;
+    if ( previousMove != null && pieceType( squares[ previousMove.to() ] ) == PAWN
+         && Math.abs( previousMove.to() - previousMove.from() ) == 32 ) {
+      this.previousMove = Moves.create( previousMove.from(), previousMove.to(), Moves.DOUBLE_PUSH );
+    }
+    this.validMoves = null;
+    this.whitePiecesCaptured = new ArrayList<Byte>();
+    this.blackPiecesCaptured = new ArrayList<Byte>();
+    this.score = 0;
+    this.amountOfMoves = amountOfMoves;
+    this.halfmoveClock = halfmoveClock;
+
+    for ( long occupied = getOccupied(); occupied != 0; occupied &= occupied - 1 ) {
+      int position = toPosition( Long.numberOfTrailingZeros( occupied ) );
+      byte piece = this.squares[ position ];
+
+      if ( pieceType( piece ) == KING ) {
+        if ( pieceColour( piece ) == WHITE ) {
+          this.whiteKingPosition = position;
+        } else {
+          this.blackKingPosition = position;
+        }
+      } else if ( pieceColour( piece ) == WHITE ) {
+        this.score += pieceValue( pieceType( piece ) );
+      } else {
+        this.score -= pieceValue( pieceType( piece ) );
+      }
+    }
+
+    this.hash = computeHash();
+    this.hashHistory = new long[ 0 ];
+    this.historyCount = 0;
+    this.undoStack = new Undo[ 0 ];
+    this.undoCount = 0;
   }
 
   /**
    * Construct a new chess board which is a copy of a supplied board.
    *
+   * <p>The copy starts with an empty undo history, so moves made on 'board' before the copy was taken cannot be
+   * taken back on the copy. The hashes of the earlier positions are copied, so repetitions of positions from before
+   * the copy are still found.</p>
+   *
    * @param board    The chess board to copy.
    */
   public Board( Board board ) {
     this.squares = board.getSquares();
+    this.pieces = board.pieces.clone();
+    this.colourPieces = board.colourPieces.clone();
+    this.openingPositionScores = board.openingPositionScores.clone();
+    this.laterPositionScores = board.laterPositionScores.clone();
     this.turnColour = board.getTurnColour();
-    this.previousMove = board.getPreviousMove();
+    this.previousMove = board.previousMove;
     this.whiteKingPosition = board.getWhiteKingPosition();
     this.blackKingPosition = board.getBlackKingPosition();
-    this.validMoves = board.getValidMoves();
+    this.validMoves = board.validMoves;
     this.whitePiecesCaptured = board.getWhitePiecesCaptured();
     this.blackPiecesCaptured = board.getBlackPiecesCaptured();
     this.score = board.getScore();
     this.amountOfMoves = board.getAmountOfMoves();
+    this.halfmoveClock = board.getHalfmoveClock();
+    this.hash = board.getHash();
+    this.hashHistory = Arrays.copyOf( board.hashHistory, board.historyCount );
+    this.historyCount = board.historyCount;
+    this.undoStack = new Undo[ 0 ];
+    this.undoCount = 0;
+  }
+
+  /**
+   * Build the bitboards and the position table scores from the squares array.
+   */
+  private void initBitboards() {
+    this.pieces = new long[ 16 ];
+    this.colourPieces = new long[ 2 ];
+    this.openingPositionScores = new int[ 2 ];
+    this.laterPositionScores = new int[ 2 ];
+
+    for ( int square = 0; square < 64; square++ ) {
+      int position = toPosition( square );
+      byte piece = this.squares[ position ];
+      if ( piece != EMPTY ) {
+        int index = piece & ( COLOUR_MASK | PIECE_MASK );
+        this.pieces[ index ] |= 1L << square;
+        this.colourPieces[ pieceColour( piece ) >> 3 ] |= 1L << square;
+        this.openingPositionScores[ pieceColour( piece ) >> 3 ] += OPENING_POSITION_TABLES[ index ][ position ];
+        this.laterPositionScores[ pieceColour( piece ) >> 3 ] += LATER_POSITION_TABLES[ index ][ position ];
+      }
+    }
   }
 
   /**
@@ -104,6 +236,68 @@ public class Board {
     return ( this.squares.clone() );
   }
 
+  /**
+   * Return the bitboard of the squares holding a kind of piece, in which bit 'rank * 8 + file' is set for each
+   * square the piece is on.
+   *
+   * @param piece    The type and colour of the piece, such as PAWN or BKNIGHT.
+   *
+   * @return The bitboard of the piece.
+   */
+  public long getPieces( byte piece ) {
+    return ( this.pieces[ piece & ( COLOUR_MASK | PIECE_MASK ) ] );
+  }
+
+  /**
+   * Fill in the list of squares holding a kind of piece, so that a player's pieces can be visited without walking
+   * the board.
+   *
+   * @param piece        The type and colour of the piece, such as PAWN or BKNIGHT.
+   * @param positions    The array to write the square indexes into, with room for 16.
+   *
+   * @return The number of squares written.
+   */
+  public int getPiecePositions( byte piece, int[] positions ) {
+    int count = 0;
+    for ( long bits = getPieces( piece ); bits != 0; bits &= bits - 1 ) {
+      positions[ count++ ] = toPosition( Long.numberOfTrailingZeros( bits ) );
+    }
+
+    return ( count );
+  }
+
+  /**
+   * Return the bitboard of the squares holding pieces of one colour.
+   *
+   * @param colour    WHITE or BLACK.
+   *
+   * @return The bitboard of the player's pieces.
+   */
+  public long getColourPieces( byte colour ) {
+    return ( this.colourPieces[ colour >> 3 ] );
+  }
+
+  /**
+   * Does a player have any pieces besides pawns and the king?
+   *
+   * @param colour    WHITE or BLACK.
+   *
+   * @return True if the player has a knight, bishop, rook or queen.
+   */
+  public boolean hasNonPawnMaterial( byte colour ) {
+    long pawnsAndKing = getPieces( (byte)( PAWN | colour ) ) | getPieces( (byte)( KING | colour ) );
+    return ( ( getColourPieces( colour ) & ~pawnsAndKing ) != 0 );
+  }
+
+  /**
+   * Return the bitboard of the occupied squares.
+   *
+   * @return The bitboard of all pieces.
+   */
+  public long getOccupied() {
+    return ( this.colourPieces[ 0 ] | this.colourPieces[ 1 ] );
+  }
+
   /**
    * What is the colour of the player to move?
    *
@@ -123,12 +317,22 @@ public class Board {
   }
 
   /**
-   * Get the last move made on the board.
+   * How many halfmoves have been made since the last capture or pawn move?
+   *
+   * @return The halfmove clock used by the fifty move rule.
+   */
+  public int getHalfmoveClock() {
+    return ( this.halfmoveClock );
+  }
+
+  /**
+   * Return the 64-bit Zobrist hash of the current position. Two boards with the same pieces on the same squares, the
+   * same player to move, the same castling rights and the same en passant file have the same hash.
    *
-   * @return The last move that was made on the board.
+   * @return The Zobrist hash of the position.
    */
-  private Move getPreviousMove() {
-    return ( this.previousMove );
+  public long getHash() {
+    return ( this.hash );
   }
 
   /**
@@ -158,15 +362,6 @@ public class Board {
     return ( isWhiteTurn() ? this.whiteKingPosition : this.blackKingPosition );
   }
 
-  /**
-   * Which square is the opponent of the current players king on?
-   *
-   * @return The square index of opponent of the current players king.
-   */
-  private int getOpposingKingPosition() {
-    return ( isWhiteTurn() ? this.blackKingPosition : this.whiteKingPosition );
-  }
-
   /**
    * Is the square mapped to by the given index empty?
    *
@@ -237,18 +432,6 @@ public class Board {
     return ( (byte)( pieceAt( position ) & PIECE_MASK ) );
   }
   
-  /**
-   * Is the given square index within the playable game area?
-   *
-   * @param destination    The square index to check.
-   *
-   * @return True if the destination square index is on the playable chess board, false otherwise.
-   */ 
-  private boolean isValidDestination( int destination ) {
-    return ( ( ( destination & 0x88 ) == VALID ) &&
-             ( squareEmpty( destination ) || ( pieceColourAt( destination ) != this.turnColour ) ) );
-  }
-
   /**
    * Is the piece located at the given square index white?
    *
@@ -268,7 +451,7 @@ public class Board {
    * @return True if the move is valid, false otherwise.
    */
   public boolean isValidMove( Move move ) {
-    return ( this.validMoves.contains( move ) );
+    return ( validMoves().contains( move ) );
   }
   
   /**
@@ -277,7 +460,7 @@ public class Board {
    * @param position    The square index at which to set the bit.
    */
   private void setMovementBit( int position ) {
-    this.squares[ position ] |= MOVED;
+    setSquare( position, (byte)( this.squares[ position ] | MOVED ) );
   }
 
   /**
@@ -297,7 +480,7 @@ public class Board {
    * @return True if checkmate, false otherwise.
    */
   public boolean isCheckmate() {
-    return ( this.validMoves.size() == 0 && kingInCheck() );
+    return ( validMoves().size() == 0 && kingInCheck() );
   }
   
   /**
@@ -306,7 +489,53 @@ public class Board {
    * @return True if stalemate, false otherwise.
    */
   public boolean isStalemate() {
-    return ( this.validMoves.size() == 0 && !kingInCheck() );
+    return ( validMoves().size() == 0 && !kingInCheck() );
+  }
+
+  /**
+   * Is the game drawn by the fifty move rule or by the position occurring for the third time? Checkmate on the
+   * move that reaches the fifty move limit still wins, so isCheckmate should be asked first.
+   *
+   * @return True if either player may claim a draw, false otherwise.
+   */
+  public boolean isDraw() {
+    return ( isFiftyMoveDraw() || repetitions() >= 2 );
+  }
+
+  /**
+   * Has the current position occurred before? The search scores a position as a draw as soon as it repeats, since
+   * a side that could do better than repeating once could have done so the first time.
+   *
+   * @return True if the position has occurred at least once before, false otherwise.
+   */
+  public boolean isRepetition() {
+    return ( repetitions() > 0 );
+  }
+
+  /**
+   * Has the game reached the fifty move limit without a capture or a pawn move?
+   *
+   * @return True if the fifty move rule applies, false otherwise.
+   */
+  public boolean isFiftyMoveDraw() {
+    return ( this.halfmoveClock >= FIFTY_MOVE_LIMIT );
+  }
+
+  /**
+   * Count how many times the current position occurred earlier in the game. Only positions with the same player to
+   * move since the last capture or pawn move can be the same, so only those hashes are compared.
+   *
+   * @return The number of earlier occurrences.
+   */
+  private int repetitions() {
+    int count = 0;
+    int oldest = Math.max( 0, this.historyCount - this.halfmoveClock );
+    for ( int i = this.historyCount - 2; i >= oldest; i -= 2 ) {
+      if ( this.hashHistory[ i ] == this.hash ) {
+        count++;
+      }
+    }
+    return ( count );
   }
 
   /**
@@ -340,24 +569,13 @@ public class Board {
     return ( isWhiteTurn() ? BLACK : WHITE );
   }
 
-  /**
-   * Does the given move perform a king or queenside castle?
-   *
-   * @param move    The move to check.
-   *
-   * @return True if the move performs a castling, false otherwise.
-   */
-  private boolean isCastle( Move move ) {
-    return ( isKingMove( move ) && Math.abs( move.to() - move.from() ) == 2 );
-  }
-
   /**
    * Perform the castling move contained in 'move'.
    *
-   * @param move    The castling move to perform.
+   * @param move    The packed castling move to perform.
    */
-  private void performCastle( Move move ) {
-    if ( move.to() > move.from() ) {
+  private void performCastle( int move ) {
+    if ( Moves.to( move ) > Moves.from( move ) ) {
       performCastleKingSide( getKingPosition() );
     }
     else {
@@ -369,7 +587,7 @@ public class Board {
     } else {
       score -= 30;
     }
-    setKingPosition( move.to() );
+    setKingPosition( Moves.to( move ) );
   }
 
   /**
@@ -378,10 +596,10 @@ public class Board {
    * @param kingPosition   The position of the king to castle.
    */
   private void performCastleKingSide( int kingPosition ) {
-    this.squares[ kingPosition + 1 ] = this.squares[ kingPosition + 3 ];
-    this.squares[ kingPosition + 3 ] = EMPTY;
-    this.squares[ kingPosition + 2 ] = this.squares[ kingPosition ];
-    this.squares[ kingPosition ] = EMPTY;
+    setSquare( kingPosition + 1, this.squares[ kingPosition + 3 ] );
+    setSquare( kingPosition + 3, EMPTY );
+    setSquare( kingPosition + 2, this.squares[ kingPosition ] );
+    setSquare( kingPosition, EMPTY );
   }
 
   /**
@@ -390,146 +608,359 @@ public class Board {
    * @param kingPosition   The position of the king to castle.
    */
   private void performCastleQueenSide( int kingPosition ) {
-    this.squares[ kingPosition - 1 ] = this.squares[ kingPosition - 4 ];
-    this.squares[ kingPosition - 4 ] = EMPTY;
-    this.squares[ kingPosition - 2 ] = this.squares[ kingPosition ];
-    this.squares[ kingPosition ] = EMPTY;
+    setSquare( kingPosition - 1, this.squares[ kingPosition - 4 ] );
+    setSquare( kingPosition - 4, EMPTY );
+    setSquare( kingPosition - 2, this.squares[ kingPosition ] );
+    setSquare( kingPosition, EMPTY );
   }
 
   /**
-   * Is the given move an en passent move?
+   * Promote the pawn that 'move' takes to the last rank, while it is still on its starting square.
    *
-   * @param move    The move to check.
+   * @param move    The packed promoting move.
    *
-   * @return True if the move performs en passent, false otherwise.
+   * @return The material gained by the promotion.
    */
-  private boolean isEnPassant( Move move ) {
-    return ( ( Math.abs( move.to() - move.from() ) == 17 || Math.abs( move.to() - move.from() ) == 15 ) && squareEmpty( move.to() ) && isPawnMove( move ) );
+  private int promotePawn( int move ) {
+    byte pieceType = Moves.promotion( move );
+    setSquare( Moves.from( move ), (byte)( pieceType | this.turnColour | MOVED ) );
+
+    return ( 700 - pieceValue( QUEEN ) + pieceValue( pieceType ) );
   }
 
   /**
-   * Is a pawn being moved?
+   * Pack a move for the current position, working out its flags and making a pawn that reaches the last rank
+   * without a promotion piece become a queen.
    *
-   * @param move    The move to check.
+   * @param move    The move to pack.
    *
-   * @return True if a pawn is being moved.
+   * @return The packed move.
    */
-  private boolean isPawnMove( Move move ) {
-    return ( pieceTypeAt( move.from() ) == PAWN );
+  public int encode( Move move ) {
+    int from = move.from();
+    int to = move.to();
+    byte pieceType = pieceTypeAt( from );
+    int flags = enemyPieceAt( to ) ? Moves.CAPTURE : 0;
+
+    if ( pieceType == PAWN ) {
+      if ( to < A2 || to >= A8 ) {
+        return ( Moves.create( from, to, move.promotion() == EMPTY ? QUEEN : move.promotion(), flags ) );
+      } else if ( Math.abs( to - from ) == 32 ) {
+        flags |= Moves.DOUBLE_PUSH;
+      } else if ( ( to - from ) % 16 != 0 && squareEmpty( to ) ) {
+        flags |= Moves.CAPTURE | Moves.EN_PASSANT;
+      }
+    } else if ( pieceType == KING && Math.abs( to - from ) == 2 ) {
+      flags |= Moves.CASTLE;
+    }
+
+    return ( Moves.create( from, to, flags ) );
   }
-  
+
   /**
-   * Is a rook being moved?
+   * Perform the supplied move on the board.
    *
-   * @param move    The move to check.
+   * <p>The move is recorded so that it can later be taken back with {@link #unmakeMove()}.</p>
    *
-   * @return True if a rook is being moved.
+   * @param move    The move to make.
    */
-  private boolean isRookMove( Move move ) {
-    return ( pieceTypeAt( move.from() ) == ROOK );
+  public void makeMove( Move move ) {
+    makeMove( encode( move ) );
   }
 
   /**
-   * Is a king being moved?
+   * Perform the supplied packed move on the board. The move must have been generated for, or encoded in, the
+   * current position.
    *
-   * @param move     The move to check.
+   * <p>The move is recorded so that it can later be taken back with {@link #unmakeMove()}.</p>
    *
-   * @return True if a king is being moved.
+   * @param move    The packed move to make.
    */
-  private boolean isKingMove( Move move ) {
-    return ( pieceTypeAt( move.from() ) == KING );
+  public void makeMove( int move ) {
+    Undo undo = pushUndo();
+    this.hash ^= CASTLING_KEYS[ castlingRights() ] ^ enPassantKey() ^ SIDE_KEY;
+
+    int from = Moves.from( move );
+    int to = Moves.to( move );
+    if ( pieceTypeAt( from ) == PAWN || !squareEmpty( to ) ) {
+      this.halfmoveClock = 0;
+    } else {
+      this.halfmoveClock++;
+    }
+    setMovementBit( from );
+
+    if ( Moves.isEnPassant( move ) ) {
+      int captured = isWhiteTurn() ? to - 16 : to + 16;
+      updateScore( captured );
+      setSquare( captured, EMPTY );
+      setSquare( to, this.squares[ from ] );
+      setSquare( from, EMPTY );
+      if ( isWhiteTurn() ) {
+        this.blackPiecesCaptured.add( PAWN );
+      } else {
+        this.whitePiecesCaptured.add( PAWN );
+      }
+      undo.capturedPiece = PAWN;
+
+      endTurn( move );
+      return;
+    } else if ( Moves.isCastle( move ) ) {
+      performCastle( move );
+      endTurn( move );
+      return;
+    }
+
+    if ( Moves.promotion( move ) != EMPTY ) {
+      if ( isWhiteTurn() ) {
+        score += promotePawn( move );
+      } else {
+        score -= promotePawn( move );
+      }
+    } else if ( pieceTypeAt( from ) == KING ) {
+      setKingPosition( to );
+    }
+
+    updateScore( to );
+
+    if ( !squareEmpty( to ) ) {
+      undo.capturedPiece = this.squares[ to ];
+      if ( isWhiteTurn() ) {
+        this.blackPiecesCaptured.add( this.squares[ to ] );
+      } else {
+        this.whitePiecesCaptured.add( this.squares[ to ] );
+      }
+    }
+
+    setSquare( to, this.squares[ from ] );
+    setSquare( from, EMPTY );
+
+    endTurn( move );
+    this.amountOfMoves++;
   }
 
   /**
-   * Does the move result in a pawn promotion?
+   * Pass the turn to the opponent without moving a piece, for the search to see what the opponent could do if
+   * given a free move. The null move is taken back with {@link #unmakeMove()}.
    *
-   * @param move    The move to check.
-   */ 
-  private boolean isPawnPromotion( Move move ) {
-    return ( isPawnMove( move ) && ( ( move.to() >= A1 && move.to() <= H1 ) || ( move.to() >= A8 && move.to() <= H8 ) ) );
+   * <p>No position before a null move can repeat after it, so the halfmove clock is reset, which also ends the
+   * search for repetitions there.</p>
+   */
+  public void makeNullMove() {
+    pushUndo();
+    this.hash ^= enPassantKey() ^ SIDE_KEY;
+    this.halfmoveClock = 0;
+    this.turnColour = opponentColour();
+    this.previousMove = Moves.NONE;
+    this.validMoves = null;
   }
 
   /**
-   * Promote the pawn located on the given square.
+   * Was the last move made on the board a null move?
    *
-   * @param pawnPosition    The square index of the pawn to promote.
+   * @return True if the turn was last passed with makeNullMove, false otherwise.
    */
-  private void promotePawn( int pawnPosition ) {
-    this.squares[ pawnPosition ] = isWhiteTurn() ? QUEEN : BQUEEN;
+  public boolean isAfterNullMove() {
+    return ( this.historyCount > 0 && this.previousMove == Moves.NONE );
   }
 
   /**
-   * Perform the supplied move on the board.
+   * Hand the turn to the opponent once the pieces for 'move' have been placed.
    *
-   * @param move    The move to make.
+   * @param move    The packed move that has just been made.
    */
-  public void makeMove( Move move ) {
-    setMovementBit( move.from() );
-    if ( isPawnMove( move ) ) {
-      setMovementBit( move.from() );
+  private void endTurn( int move ) {
+    this.turnColour = opponentColour();
+    this.previousMove = move;
+    this.hash ^= CASTLING_KEYS[ castlingRights() ] ^ enPassantKey();
+    this.validMoves = null;
+  }
 
-      if ( isEnPassant( move ) ) {
-        if ( isWhiteTurn() ) {
-          updateScore( move.to() - 16 );
-          this.squares[ move.to() - 16 ] = EMPTY;
-          this.squares[ move.to() ] = this.squares[ move.from() ];
-          this.squares[ move.from() ] = EMPTY;
-          this.blackPiecesCaptured.add( PAWN );
-        }
-        else {
-          updateScore( move.to() + 16 );
-          this.squares[ move.to() + 16 ] = EMPTY;
-          this.squares[ move.to() ] = this.squares[ move.from() ];
-          this.squares[ move.from() ] = EMPTY;
-          this.whitePiecesCaptured.add( PAWN );
-        }
+  /**
+   * Take back the last move that was made on the board, restoring the board to the exact state it was in before
+   * that move was made.
+   */
+  public void unmakeMove() {
+    if ( this.undoCount == 0 ) {
+      throw new IllegalStateException( "There is no move to take back." );
+    }
 
-        this.turnColour = opponentColour();
-        this.previousMove = move;
-        this.validMoves = generateValidMoves();
-        return;
-      } else if ( isPawnPromotion( move ) ) {
-        promotePawn( move.from() );
-        if ( isWhiteTurn() ) {
-          score += 700;
-        } else {
-          score -= 700;
-        }
-      }
-    } else if ( isKingMove( move ) ) {
-      setMovementBit( move.from() );
-
-      if ( isCastle( move ) ) {
-        performCastle( move );
-        setKingPosition( move.to() );
-        this.turnColour = opponentColour();
-        this.previousMove = move;
-        this.validMoves = generateValidMoves();
-        return;
-      }
+    Undo undo = this.undoStack[ --this.undoCount ];
+    for ( int i = undo.changes - 1; i >= 0; i-- ) {
+      putPiece( undo.changedSquares[ i ], undo.changedPieces[ i ] );
+    }
 
-      setKingPosition( move.to() );
-    } else if ( isRookMove( move ) ) {
-      setMovementBit( move.from() );
+    this.turnColour = opponentColour();
+    if ( undo.capturedPiece != EMPTY ) {
+      ArrayList<Byte> captured = isWhiteTurn() ? this.blackPiecesCaptured : this.whitePiecesCaptured;
+      captured.remove( captured.size() - 1 );
     }
 
-    updateScore( move.to() );
+    this.previousMove = undo.previousMove;
+    this.whiteKingPosition = undo.whiteKingPosition;
+    this.blackKingPosition = undo.blackKingPosition;
+    this.score = undo.score;
+    this.amountOfMoves = undo.amountOfMoves;
+    this.halfmoveClock = undo.halfmoveClock;
+    this.hash = undo.hash;
+    this.historyCount--;
+    this.validMoves = undo.validMoves;
 
-    if ( !squareEmpty( move.to() ) ) {
-      if ( isWhiteTurn() ) {
-        this.blackPiecesCaptured.add( this.squares[ move.to() ] );
-      } else {
-        this.whitePiecesCaptured.add( this.squares[ move.to() ] );
-      }
+    undo.validMoves = null;
+  }
+
+  /**
+   * Has at least one move been made on the board that can be taken back?
+   *
+   * @return True if unmakeMove can be called, false otherwise.
+   */
+  public boolean canUnmakeMove() {
+    return ( this.undoCount > 0 );
+  }
+
+  /**
+   * Save the state that the next move is about to change into the next free undo record. Records are allocated
+   * once and then reused, so a search that makes and unmakes moves does not create any garbage here. The hash of
+   * the position is added to the repetition history at the same time.
+   *
+   * @return The undo record for the move.
+   */
+  private Undo pushUndo() {
+    if ( this.undoCount == this.undoStack.length ) {
+      this.undoStack = Arrays.copyOf( this.undoStack, Math.max( 16, this.undoStack.length * 2 ) );
+    }
+    if ( this.historyCount == this.hashHistory.length ) {
+      this.hashHistory = Arrays.copyOf( this.hashHistory, Math.max( 16, this.hashHistory.length * 2 ) );
+    }
+    this.hashHistory[ this.historyCount++ ] = this.hash;
+    if ( this.undoStack[ this.undoCount ] == null ) {
+      this.undoStack[ this.undoCount ] = new Undo();
     }
 
-    this.squares[ move.to() ] = this.squares[ move.from() ];
-    this.squares[ move.from() ] = EMPTY;
+    Undo undo = this.undoStack[ this.undoCount++ ];
+    undo.previousMove = this.previousMove;
+    undo.whiteKingPosition = this.whiteKingPosition;
+    undo.blackKingPosition = this.blackKingPosition;
+    undo.score = this.score;
+    undo.amountOfMoves = this.amountOfMoves;
+    undo.halfmoveClock = this.halfmoveClock;
+    undo.hash = this.hash;
+    undo.validMoves = this.validMoves;
+    undo.capturedPiece = EMPTY;
+    undo.changes = 0;
 
-    this.turnColour = opponentColour();
-    this.previousMove = move;
-    this.validMoves = generateValidMoves();
-    this.amountOfMoves++;
+    return ( undo );
+  }
+
+  /**
+   * Place a piece on a square while a move is being made, remembering what was there before so that the move can be
+   * taken back.
+   *
+   * @param position    The square index.
+   * @param piece       The piece to place on the square.
+   */
+  private void setSquare( int position, byte piece ) {
+    Undo undo = this.undoStack[ this.undoCount - 1 ];
+    undo.changedSquares[ undo.changes ] = position;
+    undo.changedPieces[ undo.changes ] = this.squares[ position ];
+    undo.changes++;
+    this.hash ^= PIECE_KEYS[ this.squares[ position ] & ( COLOUR_MASK | PIECE_MASK ) ][ position ]
+               ^ PIECE_KEYS[ piece & ( COLOUR_MASK | PIECE_MASK ) ][ position ];
+    putPiece( position, piece );
+  }
+
+  /**
+   * Place a piece on a square, keeping the bitboards and the position table scores in step with the squares array.
+   *
+   * @param position    The square index.
+   * @param piece       The piece to place on the square, or EMPTY.
+   */
+  private void putPiece( int position, byte piece ) {
+    long bit = 1L << toSquare( position );
+    byte old = this.squares[ position ];
+
+    if ( old != EMPTY ) {
+      int index = old & ( COLOUR_MASK | PIECE_MASK );
+      int colour = pieceColour( old ) >> 3;
+      this.pieces[ index ] &= ~bit;
+      this.colourPieces[ colour ] &= ~bit;
+      this.openingPositionScores[ colour ] -= OPENING_POSITION_TABLES[ index ][ position ];
+      this.laterPositionScores[ colour ] -= LATER_POSITION_TABLES[ index ][ position ];
+    }
+    if ( piece != EMPTY ) {
+      int index = piece & ( COLOUR_MASK | PIECE_MASK );
+      int colour = pieceColour( piece ) >> 3;
+      this.pieces[ index ] |= bit;
+      this.colourPieces[ colour ] |= bit;
+      this.openingPositionScores[ colour ] += OPENING_POSITION_TABLES[ index ][ position ];
+      this.laterPositionScores[ colour ] += LATER_POSITION_TABLES[ index ][ position ];
+    }
+
+    this.squares[ position ] = piece;
+  }
+
+  /**
+   * Which castling moves are still possible, judging only by whether the kings and rooks have moved from their
+   * starting squares?
+   *
+   * @return A set of castling rights: 1 for white kingside, 2 for white queenside, 4 for black kingside and 8 for
+   *         black queenside.
+   */
+  private int castlingRights() {
+    int rights = 0;
+
+    if ( this.squares[ E1 ] == KING ) {
+      if ( this.squares[ H1 ] == ROOK ) rights |= 1;
+      if ( this.squares[ A1 ] == ROOK ) rights |= 2;
+    }
+    if ( this.squares[ E8 ] == BKING ) {
+      if ( this.squares[ H8 ] == BROOK ) rights |= 4;
+      if ( this.squares[ A8 ] == BROOK ) rights |= 8;
+    }
+
+    return ( rights );
+  }
+
+  /**
+   * Return the Zobrist key for the file on which an en passant capture could be made, which is the file of a pawn
+   * that made a double step on the previous move.
+   *
+   * @return The en passant key, or zero if the previous move was not a pawn double step.
+   */
+  private long enPassantKey() {
+    if ( Moves.isDoublePush( this.previousMove ) ) {
+      return ( EN_PASSANT_KEYS[ Moves.to( this.previousMove ) & 7 ] );
+    }
+
+    return ( 0 );
+  }
+
+  /**
+   * Which square can a pawn capture en passant on?
+   *
+   * @return The index of the square passed over by a pawn that made a double step on the previous move, or -1.
+   */
+  private int enPassantSquare() {
+    if ( Moves.isDoublePush( this.previousMove ) ) {
+      return ( ( Moves.from( this.previousMove ) + Moves.to( this.previousMove ) ) / 2 );
+    }
+
+    return ( -1 );
+  }
+
+  /**
+   * Calculate the Zobrist hash of the current position from scratch.
+   *
+   * @return The Zobrist hash of the position.
+   */
+  private long computeHash() {
+    long hash = CASTLING_KEYS[ castlingRights() ] ^ enPassantKey();
+
+    for ( long occupied = getOccupied(); occupied != 0; occupied &= occupied - 1 ) {
+      int position = toPosition( Long.numberOfTrailingZeros( occupied ) );
+      hash ^= PIECE_KEYS[ this.squares[ position ] & ( COLOUR_MASK | PIECE_MASK ) ][ position ];
+    }
+
+    return ( isWhiteTurn() ? hash : hash ^ SIDE_KEY );
   }
 
   /**
@@ -540,7 +971,18 @@ public class Board {
    * @return A integer value of the piece worth.
    */
   private int pieceValueAt( int position ) {
-    switch ( pieceTypeAt( position ) ) {
+    return ( pieceValue( pieceTypeAt( position ) ) );
+  }
+
+  /**
+   * What is a piece of the given type worth?
+   *
+   * @param pieceType    The type of the piece.
+   *
+   * @return A integer value of the piece worth.
+   */
+  public static int pieceValue( byte pieceType ) {
+    switch ( pieceType ) {
       case PAWN:   return ( 100 );
       case KNIGHT: return ( 325 );
       case BISHOP: return ( 330 );
@@ -566,7 +1008,8 @@ public class Board {
   }
 
   /**
-   * Can the piece located at 'position' legally move to 'destination'?
+   * Can the piece located at 'position' legally move to 'destination'? The move is tried out on the board, which
+   * is only needed for en passant captures; other moves are generated legal.
    *
    * @param position    The index of the square the piece is currently on.
    * @param destination The index of the square the piece would like to move to.
@@ -579,16 +1022,26 @@ public class Board {
     if ( pieceType( p ) == KING ) {
       setKingPosition( destination );
     }
-    this.squares[ position ] = EMPTY;
-    this.squares[ destination ] = p;
+
+    // An en passant capture also removes the captured pawn, which may uncover an attack on the king.
+    int captured = destination;
+    if ( pieceType( p ) == PAWN && t == EMPTY && ( destination - position ) % 16 != 0 ) {
+      captured = isWhiteTurn() ? destination - 16 : destination + 16;
+    }
+    byte c = this.squares[ captured ];
+
+    putPiece( position, EMPTY );
+    putPiece( captured, EMPTY );
+    putPiece( destination, p );
 
     boolean canMove = !kingInCheck();
 
     if ( pieceType( p ) == KING ) {
       setKingPosition( position );
     }
-    this.squares[ position ] = p;
-    this.squares[ destination ] = t;
+    putPiece( destination, t );
+    putPiece( captured, c );
+    putPiece( position, p );
 
     return ( canMove );
   }
@@ -610,340 +1063,559 @@ public class Board {
    * @return True if at least one piece is attacking the square, false otherwise.
    */ 
   private boolean squareAttacked( int position ) {
-    int[] directions = new int[]{ 15, 17, -15, -17 };
-    for ( int direction : directions ) {
-      for ( int i = 1; isValidDestination( position + i*direction ); i++ ) {
-        if ( enemyPieceAt( position + i*direction ) ) {
-          if ( pieceTypeAt( position + i*direction ) == QUEEN || pieceTypeAt( position + i*direction ) == BISHOP ) {
-            return ( true );
-          } else if ( pieceTypeAt( position + i*direction ) == PAWN && i == 1 ) {
-            if ( this.turnColour == WHITE ) {
-              return ( direction == 15 || direction == 17 );
-            }
-            return ( direction == -15 || direction == -17 );
-          }
-          break;
-        }
-      }
-    }
+    return ( attackers( toSquare( position ), getOccupied() ) != 0 );
+  }
 
-    for ( int direction : new int[]{ 1, -1, 16, -16 } ) {
-      for ( int i = 1; isValidDestination( position + i*direction ); i++ ) {
-        if ( enemyPieceAt( position + i*direction ) ) {
-          if ( pieceTypeAt( position + i*direction ) == ROOK || pieceTypeAt( position + i*direction ) == QUEEN ) {
-            return ( true );
-          }
-          break;
-        }
-      }
-    }
+  /**
+   * Which opponent pieces attack a square, if the occupied squares were 'occupied'?
+   *
+   * @param square      The bitboard square index of the square to check.
+   * @param occupied    The bitboard of the squares that block sliding pieces.
+   *
+   * @return The bitboard of the attacking pieces.
+   */
+  private long attackers( int square, long occupied ) {
+    byte enemy = opponentColour();
 
-    directions = new int[]{ 18, 33, 31, 14, -18, -33, -31, -14 };
-    for ( int direction : directions ) {
-      if ( isValidDestination( position + direction ) && enemyPieceAt( position + direction ) && pieceTypeAt( position + direction ) == KNIGHT ) {
-        return ( true );
-      }
-    }
+    // A piece attacks 'square' exactly when a piece of the same kind on 'square' would attack it back, except for
+    // pawns, which attack in the opposite direction to pawns of the other colour.
+    return ( ( KNIGHT_ATTACKS[ square ] & this.pieces[ KNIGHT | enemy ] )
+             | ( KING_ATTACKS[ square ] & this.pieces[ KING | enemy ] )
+             | ( PAWN_ATTACKS[ this.turnColour >> 3 ][ square ] & this.pieces[ PAWN | enemy ] )
+             | ( bishopAttacks( square, occupied ) & ( this.pieces[ BISHOP | enemy ] | this.pieces[ QUEEN | enemy ] ) )
+             | ( rookAttacks( square, occupied ) & ( this.pieces[ ROOK | enemy ] | this.pieces[ QUEEN | enemy ] ) ) );
+  }
 
-    return ( false );
+  /**
+   * Which pieces of either colour attack a square, if the occupied squares were 'occupied'?
+   *
+   * @param square      The bitboard square index of the square to check.
+   * @param occupied    The bitboard of the squares that block sliding pieces.
+   *
+   * @return The bitboard of the attacking pieces, including any not in 'occupied'.
+   */
+  private long allAttackers( int square, long occupied ) {
+    long diagonal = this.pieces[ BISHOP ] | this.pieces[ BBISHOP ] | this.pieces[ QUEEN ] | this.pieces[ BQUEEN ];
+    long straight = this.pieces[ ROOK ] | this.pieces[ BROOK ] | this.pieces[ QUEEN ] | this.pieces[ BQUEEN ];
+
+    return ( ( KNIGHT_ATTACKS[ square ] & ( this.pieces[ KNIGHT ] | this.pieces[ BKNIGHT ] ) )
+             | ( KING_ATTACKS[ square ] & ( this.pieces[ KING ] | this.pieces[ BKING ] ) )
+             | ( PAWN_ATTACKS[ BLACK >> 3 ][ square ] & this.pieces[ PAWN ] )
+             | ( PAWN_ATTACKS[ WHITE >> 3 ][ square ] & this.pieces[ BPAWN ] )
+             | ( bishopAttacks( square, occupied ) & diagonal )
+             | ( rookAttacks( square, occupied ) & straight ) );
   }
 
   /**
-   * Obtain a list of all valid moves that can be played on the current board position.
+   * Which opponent pieces give check to the current players king?
    *
-   * @return An ArrayList of all valid moves that can be played.
+   * @return The bitboard of the checking pieces.
    */
-  public ArrayList<Move> getValidMoves() {
-    return ( new ArrayList<Move>( this.validMoves ) );
+  private long checkers() {
+    return ( attackers( toSquare( getKingPosition() ), getOccupied() ) );
   }
 
-  private ArrayList<Move> generateValidMoves() {
-    ArrayList<Move> validMoves = new ArrayList<Move>();
+  /**
+   * Which of the current players pieces are pinned: the only piece between their king and an opponent bishop, rook
+   * or queen that would otherwise attack it?
+   *
+   * @return The bitboard of the pinned pieces.
+   */
+  private long pinnedPieces() {
+    int king = toSquare( getKingPosition() );
+    byte enemy = opponentColour();
+    long occupied = getOccupied();
+    long snipers = ( rookAttacks( king, 0 ) & ( this.pieces[ ROOK | enemy ] | this.pieces[ QUEEN | enemy ] ) )
+                   | ( bishopAttacks( king, 0 ) & ( this.pieces[ BISHOP | enemy ] | this.pieces[ QUEEN | enemy ] ) );
 
-    for ( int rank = 0; rank < 8; rank++ ) {
-      for ( int file = rank * 16 + 7; file >= rank * 16; file-- ) {
-        if ( !squareEmpty( file ) && pieceColourAt( file ) == this.turnColour ) {
-          validMoves.addAll( generateValidMoves( pieceTypeAt( file ), file ) );
-        }
+    long pinned = 0;
+    for ( ; snipers != 0; snipers &= snipers - 1 ) {
+      long between = BETWEEN[ king ][ Long.numberOfTrailingZeros( snipers ) ] & occupied;
+      if ( Long.bitCount( between ) == 1 ) {
+        pinned |= between & getColourPieces( this.turnColour );
       }
     }
 
+    return ( pinned );
+  }
+
+  /**
+   * Where can a piece other than the king move to get the king out of check? It must capture the checking piece or
+   * block its attack. No other piece can help against a double check.
+   *
+   * @param checkers    The bitboard of the checking pieces.
+   *
+   * @return The bitboard of the squares that end the check.
+   */
+  private long evasionTargets( long checkers ) {
+    if ( Long.bitCount( checkers ) > 1 ) return ( 0 );
 
-    return ( validMoves );
+    return ( checkers | BETWEEN[ toSquare( getKingPosition() ) ][ Long.numberOfTrailingZeros( checkers ) ] );
   }
 
   /**
-   * Generate all valid moves for the piece of type 'pieceType' located on square 'position'.
+   * Which squares does a knight, bishop, rook, queen or king on 'position' attack, given the pieces currently on the
+   * board?
    *
-   * @param pieceType    The type of the piece to generate moves for.
-   * @param position     The index of the current square position of the piece.
+   * @param pieceType    The type of the piece.
+   * @param position     The index of the square the piece is on.
    *
-   * @return An ArrayList of all valid moves that the piece can make.
+   * @return The bitboard of the attacked squares, whatever colour the pieces on them are.
    */
-  public ArrayList<Move> generateValidMoves( byte pieceType, int position ) {
-    ArrayList<Move> validMoves = new ArrayList<Move>();
-    ArrayList<Integer> destinations = generateDestinations( pieceType, position );
+  private long attackSet( byte pieceType, int position ) {
+    int square = toSquare( position );
 
-    for ( int destination : destinations ) {
-      if ( isValidDestination( destination ) && canMoveTo( position, destination ) ) {
-        validMoves.add( new Move( position, destination ) );
-      }
+    switch ( pieceType ) {
+      case KNIGHT: return ( KNIGHT_ATTACKS[ square ] );
+      case BISHOP: return ( bishopAttacks( square, getOccupied() ) );
+      case ROOK:   return ( rookAttacks( square, getOccupied() ) );
+      case QUEEN:  return ( queenAttacks( square, getOccupied() ) );
+      case KING:   return ( KING_ATTACKS[ square ] );
     }
 
-    return ( validMoves );
+    return ( 0 );
   }
-  
 
   /**
-   * Generate all destinations for the piece of type 'pieceType' located on square 'position'.
+   * Does the piece located on 'position' attack the square 'target', given the pieces currently on the board? The
+   * attack tables rule out most squares at once, leaving at most one ray to walk.
    *
-   * @param pieceType    The type of the piece to generate moves for.
-   * @param position     The index of the current square position of the piece.
+   * @param position    The index of the square the piece is on.
+   * @param target      The index of the square to check.
    *
-   * @return An ArrayList of all destinations that the piece can move to.
+   * @return True if the piece attacks the square, false otherwise or if 'position' is empty.
    */
-  private ArrayList<Integer> generateDestinations( byte pieceType, int position ) {
-    switch ( pieceType ) {
-      case PAWN:   return ( generatePawnDestinations( position ) );
-      case KNIGHT: return ( generateKnightDestinations( position ) );
-      case BISHOP: return ( generateBishopDestinations( position ) );
-      case ROOK:   return ( generateRookDestinations( position ) );
-      case QUEEN:  return ( generateQueenDestinations( position ) );
-      case KING:   return ( generateKingDestinations( position ) );
+  public boolean attacks( int position, int target ) {
+    byte piece = pieceAt( position );
+    if ( piece == EMPTY || !canAttack( piece, position, target ) ) return ( false );
+
+    byte pieceType = pieceType( piece );
+    if ( pieceType == BISHOP || pieceType == ROOK || pieceType == QUEEN ) {
+      int step = step( position, target );
+      for ( int square = position + step; square != target; square += step ) {
+        if ( !squareEmpty( square ) ) return ( false );
+      }
     }
 
-    return ( new ArrayList<Integer>() );
+    return ( true );
+  }
+
+  /**
+   * Obtain a list of all valid moves that can be played on the current board position.
+   *
+   * @return An ArrayList of all valid moves that can be played.
+   */
+  public ArrayList<Move> getValidMoves() {
+    return ( new ArrayList<Move>( validMoves() ) );
   }
 
   /**
-   * Generate the destinations for a pawn located at 'position'.
+   * Return the list of valid moves for the current position, generating it the first time it is asked for. Making
+   * a move only discards the list, so positions that are never asked for their moves, such as the leaves of a
+   * search, never pay for move generation.
    *
-   * @param position    The index of the square the pawn is located.
+   * <p>The returned list is shared and must not be modified.</p>
    *
-   * @return An ArrayList of all destinations that the pawn can move to.
+   * @return An ArrayList of all valid moves that can be played.
    */
-  private ArrayList<Integer> generatePawnDestinations( int position ) {
-    if ( isWhitePiece( position ) ) {
-      return ( generateWhitePawnDestinations( position ) );
+  private ArrayList<Move> validMoves() {
+    if ( this.validMoves == null ) {
+      int[] moves = new int[ Moves.MAX_MOVES ];
+      this.validMoves = toMoveList( moves, generateMoves( moves ) );
     }
 
-    return ( generateBlackPawnDestinations( position ) );
+    return ( this.validMoves );
   }
 
   /**
-   * Generate the destinations for a white pawn located at 'position'.
+   * Convert packed moves into a list of Moves.
    *
-   * @param position    The index of the square the white pawn is located.
+   * @param moves    The buffer holding the packed moves.
+   * @param count    The number of moves in the buffer.
    *
-   * @return An ArrayList of all destinations that the white pawn can move to.
+   * @return An ArrayList of the moves.
    */
-  public ArrayList<Integer> generateWhitePawnDestinations( int position ) {
-    ArrayList<Integer> destinations = new ArrayList<Integer>();
-
-    if ( !hasPieceMoved( pieceAt( position ) ) && squareEmpty( position + 16 ) && squareEmpty( position + 32 ) ) {
-      destinations.add( position + 32 );
-    }
-    if ( !squareEmpty( position + 15 ) || whiteCanEnPassantLeft( position ) ) {
-      destinations.add( position + 15 );
-    }
-    if ( !squareEmpty( position + 17 ) || whiteCanEnPassantRight( position ) ) {
-      destinations.add( position + 17 );
+  private static ArrayList<Move> toMoveList( int[] moves, int count ) {
+    ArrayList<Move> list = new ArrayList<Move>( count );
+    for ( int i = 0; i < count; i++ ) {
+      list.add( Moves.toMove( moves[ i ] ) );
     }
 
-    if ( squareEmpty( position + 16 ) ) {
-      destinations.add( position + 16 );
-    }
+    return ( list );
+  }
 
-    return ( destinations );
+  /**
+   * Generate every legal move in the current position into a buffer owned by the caller. Checking pieces and pinned
+   * pieces are found once, so that the moves can be generated legal instead of each being tried out and tested for
+   * check.
+   *
+   * @param moves    The buffer to write the packed moves into, with room for Moves.MAX_MOVES moves.
+   *
+   * @return The number of moves written.
+   */
+  public int generateMoves( int[] moves ) {
+    return ( generate( moves, ALL_MOVES ) );
   }
 
   /**
-   * Can the white pawn located at 'position' perform en passent to the left?
+   * Generate every legal move that captures a piece, including en passant, into a buffer owned by the caller.
+   * Promotions are only to a queen. This is much cheaper than generateMoves when only captures are wanted.
    *
-   * @param position    The index of the square the white pawn is located.
+   * @param moves    The buffer to write the packed moves into, with room for Moves.MAX_MOVES moves.
    *
-   * @return True if the pawn can en passent left, false otherwise.
+   * @return The number of moves written.
    */
-  private boolean whiteCanEnPassantLeft( int position ) {
-    return ( this.previousMove != null && pieceTypeAt( position - 1 ) == PAWN && this.previousMove.from() == ( position + 31 ) ) && this.previousMove.to() == ( position - 1 );
+  public int generateCaptures( int[] moves ) {
+    return ( generate( moves, CAPTURES ) );
   }
 
   /**
-   * Can the white pawn located at 'position' perform en passent to the right?
+   * Generate every legal move that generateCaptures leaves out: the moves that do not capture, castling and all
+   * promotions that do not capture, and captures that promote to a knight, rook or bishop. Together with
+   * generateCaptures this gives the same moves as generateMoves.
    *
-   * @param position    The index of the square the white pawn is located.
+   * @param moves    The buffer to write the packed moves into, with room for Moves.MAX_MOVES moves.
    *
-   * @return True if the pawn can en passent right, false otherwise.
+   * @return The number of moves written.
    */
-  private boolean whiteCanEnPassantRight( int position ) {
-    return ( this.previousMove != null && pieceTypeAt( position + 1 ) == PAWN && this.previousMove.from() == ( position + 33 ) ) && this.previousMove.to() == ( position + 1 );
+  public int generateQuiets( int[] moves ) {
+    return ( generate( moves, QUIETS ) );
   }
 
   /**
-   * Generate the destinations for a black pawn located at 'position'.
+   * Generate the legal moves of one kind. When the king is in check, the king steps out of check, or another piece
+   * captures the checking piece or blocks its attack.
    *
-   * @param position    The index of the square the black pawn is located.
+   * @param moves    The buffer to write the packed moves into.
+   * @param kind     ALL_MOVES, CAPTURES or QUIETS.
    *
-   * @return An ArrayList of all destinations that the black pawn can move to.
+   * @return The number of moves written.
    */
-  public ArrayList<Integer> generateBlackPawnDestinations( int position ) {
-    ArrayList<Integer> destinations = new ArrayList<Integer>();
+  private int generate( int[] moves, int kind ) {
+    long checkers = checkers();
+    long evasions = checkers == 0 ? ~0L : evasionTargets( checkers );
+    long pinned = pinnedPieces();
+    long targets = kind == CAPTURES ? getColourPieces( opponentColour() ) : kind == QUIETS ? ~getOccupied() : ~0L;
 
-    if ( !hasPieceMoved( pieceAt( position ) ) && squareEmpty( position - 16 ) && squareEmpty( position - 32 ) ) {
-      destinations.add( position - 32 );
+    int count = 0;
+    for ( long own = getColourPieces( this.turnColour ); own != 0; own &= own - 1 ) {
+      int position = toPosition( Long.numberOfTrailingZeros( own ) );
+      byte pieceType = pieceTypeAt( position );
+      if ( pieceType == KING ) {
+        count = addLegalMoves( moves, count, KING, position, targets, 0, kind );
+      } else if ( evasions != 0 ) {
+        // Pawns capture and push onto different squares, so they sort their moves by kind themselves.
+        long pieceTargets = pieceType == PAWN ? evasions : evasions & targets;
+        count = addLegalMoves( moves, count, pieceType, position, pieceTargets, pinned, kind );
+      }
     }
-    if ( !squareEmpty( position - 15 ) || blackCanEnPassantLeft( position ) ) {
-      destinations.add( position - 15 );
+
+    if ( checkers == 0 && kind != CAPTURES ) {
+      count = addCastles( moves, count, getKingPosition() );
     }
-    if ( !squareEmpty( position - 17 ) || blackCanEnPassantRight( position ) ) {
-      destinations.add( position - 17 );
+
+    return ( count );
+  }
+
+  /**
+   * Check that a move, such as one from the transposition table or a killer move from another position, is legal
+   * in the current position, by generating the moves of the piece on its starting square.
+   *
+   * @param move    The packed move to check. Only its squares and promotion are compared.
+   *
+   * @return The move with its flags for the current position, or Moves.NONE if it is not legal.
+   */
+  public int legalMove( int move ) {
+    int from = Moves.from( move );
+    if ( squareEmpty( from ) || pieceColourAt( from ) != this.turnColour ) return ( Moves.NONE );
+
+    int[] moves = this.pieceMoves;
+    int count = generatePieceMoves( moves, pieceTypeAt( from ), from );
+    for ( int i = 0; i < count; i++ ) {
+      if ( ( moves[ i ] & Moves.KEY_MASK ) == ( move & Moves.KEY_MASK ) ) {
+        return ( moves[ i ] );
+      }
     }
 
-    if ( squareEmpty( position - 16 ) ) {
-      destinations.add( position - 16 );
+    return ( Moves.NONE );
+  }
+
+  /**
+   * Generate the legal moves of the piece of type 'pieceType' located on square 'position'.
+   */
+  private int generatePieceMoves( int[] moves, byte pieceType, int position ) {
+    long checkers = checkers();
+    if ( pieceType == KING ) {
+      int count = addLegalMoves( moves, 0, pieceType, position, ~0L, 0, ALL_MOVES );
+      return ( checkers == 0 ? addCastles( moves, count, position ) : count );
     }
 
-    return ( destinations );
+    long targets = checkers == 0 ? ~0L : evasionTargets( checkers );
+    return ( targets == 0 ? 0 : addLegalMoves( moves, 0, pieceType, position, targets, pinnedPieces(), ALL_MOVES ) );
   }
 
   /**
-   * Can the black pawn located at 'position' perform en passent to the left?
-   *
-   * @param position    The index of the square the black pawn is located.
+   * Obtain a list of all valid moves on the current board position that capture a piece, including en passant.
    *
-   * @return True if the pawn can en passent left, false otherwise.
+   * @return An ArrayList of all valid capturing moves.
    */
-  private boolean blackCanEnPassantLeft( int position ) {
-    return ( this.previousMove != null && pieceTypeAt( position + 1 ) == PAWN && this.previousMove.from() == ( position - 31 ) && this.previousMove.to() == ( position + 1 ) );
+  public ArrayList<Move> getValidCaptures() {
+    int[] moves = new int[ Moves.MAX_MOVES ];
+    return ( toMoveList( moves, generateCaptures( moves ) ) );
   }
 
   /**
-   * Can the black pawn located at 'position' perform en passent to the right?
+   * What is the material value of the piece the given move captures?
    *
-   * @param position    The index of the square the black pawn is located.
+   * @param move    The packed move to check.
    *
-   * @return True if the pawn can en passent right, false otherwise.
+   * @return The value of the captured piece, or 0 if the move is not a capture.
    */
-  private boolean blackCanEnPassantRight( int position ) {
-    return ( this.previousMove != null && pieceTypeAt( position - 1 ) == PAWN && this.previousMove.from() == ( position - 33 ) && this.previousMove.to() == ( position -1 ) );
+  public int captureValue( int move ) {
+    if ( Moves.isEnPassant( move ) ) {
+      return ( pieceValue( PAWN ) );
+    }
+
+    return ( Moves.isCapture( move ) ? pieceValueAt( Moves.to( move ) ) : 0 );
   }
 
   /**
-   * Generate the destinations for a king located at 'position'.
+   * Static exchange evaluation: what material does the player to move win or lose by making 'move', if both players
+   * then keep capturing on its destination with their least valuable piece for as long as it pays? Pieces that
+   * attack through the pieces in front of them on the same line (x-rays) join in as the square is uncovered. Pins
+   * and checks are ignored.
    *
-   * @param position    The index of the square the king is located on.
+   * @param move    The packed move, normally a capture.
    *
-   * @return An ArrayList of all destinations that the king can move to.
+   * @return The expected material gain in pieceValue units, negative if the move loses material.
    */
-  public ArrayList<Integer> generateKingDestinations( int position ) {
-    ArrayList<Integer> destinations = new ArrayList<Integer>();
+  public int see( int move ) {
+    int from = Moves.from( move );
+    int to = Moves.to( move );
+    long occupied = getOccupied() & ~( 1L << toSquare( from ) );
 
-    if ( canCastleKingSide( position ) ) {
-      destinations.add( position + 2 );
-    }
-    if ( canCastleQueenSide( position ) ) {
-      destinations.add( position - 2 );
+    int captured = captureValue( move );
+    int attacker = pieceValueAt( from );
+    if ( Moves.isEnPassant( move ) ) {
+      occupied &= ~( 1L << toSquare( isWhiteTurn() ? to - 16 : to + 16 ) );
+    } else if ( Moves.promotion( move ) != EMPTY ) {
+      captured += pieceValue( Moves.promotion( move ) ) - pieceValue( PAWN );
+      attacker = pieceValue( Moves.promotion( move ) );
     }
 
-    for ( int i : new int[]{ 15, 16, 17, 1, -1, -17, -16, -15 } ) {
-      if ( !nextToOpponentKing( position + i ) ) {
-        destinations.add( position + i );
+    return ( exchange( toSquare( to ), captured, attacker, occupied, opponentColour() ) );
+  }
+
+  /**
+   * Play out the captures on a square once a first piece has captured there.
+   *
+   * @param square      The bitboard square index of the square.
+   * @param captured    The value of the piece taken by the first capture.
+   * @param attacker    The value of the piece that made the first capture, which now stands on the square.
+   * @param occupied    The occupied squares after the first capture.
+   * @param colour      The colour of the player to recapture.
+   *
+   * @return The material won by the first capture once the exchange is resolved.
+   */
+  private int exchange( int square, int captured, int attacker, long occupied, byte colour ) {
+    int[] gain = this.exchangeGains;
+    int depth = 0;
+    gain[ 0 ] = captured;
+
+    long attackers = allAttackers( square, occupied ) & occupied;
+    while ( true ) {
+      depth++;
+      gain[ depth ] = attacker - gain[ depth - 1 ];
+      // Neither side can do better by capturing here than by stopping, whatever follows.
+      if ( Math.max( -gain[ depth - 1 ], gain[ depth ] ) < 0 ) break;
+
+      long from = 0;
+      byte pieceType = PAWN;
+      for ( ; pieceType <= KING; pieceType++ ) {
+        from = attackers & this.pieces[ pieceType | colour ];
+        if ( from != 0 ) break;
       }
+      if ( from == 0 ) break;
+
+      occupied &= ~( from & -from );
+      attackers = allAttackers( square, occupied ) & occupied;
+      attacker = pieceValue( pieceType );
+      colour = (byte)( colour ^ BLACK );
+    }
+
+    while ( --depth > 0 ) {
+      gain[ depth - 1 ] = -Math.max( -gain[ depth - 1 ], gain[ depth ] );
     }
 
-    return ( destinations );
+    return ( gain[ 0 ] );
   }
 
   /**
-   * Can the king located at 'position' perform a king side castling move?
+   * Generate all valid moves for the piece of type 'pieceType' located on square 'position'.
    *
-   * @return True if the king can castle, false otherwise.
+   * @param pieceType    The type of the piece to generate moves for.
+   * @param position     The index of the current square position of the piece.
+   *
+   * @return An ArrayList of all valid moves that the piece can make.
    */
-  private boolean canCastleKingSide( int position ) {
-    return ( !hasPieceMoved( pieceAt( position ) ) && !kingInCheck() && pieceTypeAt( position + 3 ) == ROOK && !hasPieceMoved( pieceAt( position + 3 ) )
-             && squareEmpty( position + 1 ) && !squareAttacked( position + 1 )
-             && squareEmpty( position + 2 ) && !squareAttacked( position + 2 ) );
+  public ArrayList<Move> generateValidMoves( byte pieceType, int position ) {
+    int[] moves = new int[ Moves.MAX_MOVES ];
+    return ( toMoveList( moves, generatePieceMoves( moves, pieceType, position ) ) );
   }
 
   /**
-   * Can the king located at 'position' perform a queen side castling move?
+   * Add the legal moves of the piece on 'position' that end on one of 'targets'.
    *
-   * @return True if the king can castle, false otherwise.
+   * <p>A pinned piece may only move along the line between its king and the pinning piece, and the king may only
+   * move to squares that would not be attacked once it has left its square. En passant captures are the exception:
+   * they take a second piece off the board, which can uncover an attack along the rank, so they are tried out.</p>
+   *
+   * @param moves        The buffer to write the packed moves into.
+   * @param count        The number of moves already in the buffer.
+   * @param pieceType    The type of the piece.
+   * @param position     The index of the square the piece is on.
+   * @param targets      The bitboard of the squares the piece may move to.
+   * @param pinned       The bitboard of the pinned pieces.
+   * @param kind         ALL_MOVES, CAPTURES or QUIETS, which only pawns need to know.
+   *
+   * @return The number of moves in the buffer.
    */
-  private boolean canCastleQueenSide( int position ) {
-    return ( !hasPieceMoved( pieceAt( position ) ) && !kingInCheck() && pieceTypeAt( position - 4 ) == ROOK && !hasPieceMoved( pieceAt( position - 4 ) )
-             && squareEmpty( position - 1 ) && !squareAttacked( position - 1 )
-             && squareEmpty( position - 2 ) && !squareAttacked( position - 2 )
-             && squareEmpty( position - 3 ) && !squareAttacked( position - 3 ) );
+  private int addLegalMoves( int[] moves, int count, byte pieceType, int position, long targets, long pinned,
+                             int kind ) {
+    int square = toSquare( position );
+    if ( ( pinned & ( 1L << square ) ) != 0 ) {
+      targets &= LINE[ toSquare( getKingPosition() ) ][ square ];
+    }
+
+    if ( pieceType == PAWN ) {
+      return ( addPawnMoves( moves, count, position, targets, kind ) );
+    }
+
+    long enemies = getColourPieces( opponentColour() );
+    long destinations = attackSet( pieceType, position ) & ~getColourPieces( this.turnColour ) & targets;
+    long occupied = getOccupied() & ~( 1L << square );
+    for ( ; destinations != 0; destinations &= destinations - 1 ) {
+      int destination = Long.numberOfTrailingZeros( destinations );
+      if ( pieceType != KING || attackers( destination, occupied ) == 0 ) {
+        int flags = ( enemies & ( 1L << destination ) ) != 0 ? Moves.CAPTURE : 0;
+        moves[ count++ ] = Moves.create( position, toPosition( destination ), flags );
+      }
+    }
+
+    return ( count );
   }
 
   /**
-   * Is the king located at 'position' adjacent to an opponents king?
+   * Add the legal moves of the pawn on 'position' that end on one of 'targets', and any en passant capture.
+   *
+   * <p>Captures, en passant included, and captures that promote to a queen are CAPTURES. Pushes, all promotions
+   * by a push, and captures that promote to another piece are QUIETS.</p>
    *
-   * @param position    The location of the king to check.
+   * @param moves       The buffer to write the packed moves into.
+   * @param count       The number of moves already in the buffer.
+   * @param position    The index of the square the pawn is on.
+   * @param targets     The bitboard of the squares the pawn may move to.
+   * @param kind        ALL_MOVES, CAPTURES or QUIETS.
+   *
+   * @return The number of moves in the buffer.
    */
-  private boolean nextToOpponentKing( int position ) {
-    int[] offsets = new int[]{ 15, 16, 17, -1, 1, -15, -16, -17 };
+  private int addPawnMoves( int[] moves, int count, int position, long targets, int kind ) {
+    int forward = isWhiteTurn() ? 16 : -16;
+    int step = position + forward;
 
-    for ( int i : offsets ) {
-      if ( ( position + i ) == getOpposingKingPosition() ) {
-        return ( true );
+    if ( kind != CAPTURES && squareEmpty( step ) ) {
+      count = addPawnMove( moves, count, position, step, 0, targets, true, true );
+      int doubleStep = step + forward;
+      if ( !hasPieceMoved( pieceAt( position ) ) && squareEmpty( doubleStep ) ) {
+        count = addPawnMove( moves, count, position, doubleStep, Moves.DOUBLE_PUSH, targets, true, true );
       }
     }
 
-    return ( false );
+    for ( int destination = step - 1; destination <= step + 1; destination += 2 ) {
+      if ( ( destination & 0x88 ) != VALID ) continue;
+
+      if ( enemyPieceAt( destination ) ) {
+        count = addPawnMove( moves, count, position, destination, Moves.CAPTURE, targets, kind != QUIETS,
+                             kind != CAPTURES );
+      } else if ( kind != QUIETS && destination == enPassantSquare() && canMoveTo( position, destination ) ) {
+        moves[ count++ ] = Moves.create( position, destination, Moves.CAPTURE | Moves.EN_PASSANT );
+      }
+    }
+
+    return ( count );
   }
 
   /**
-   * Generate the destinations for a knight located at 'position'.
-   *
-   * @param position    The index of the square the knight is located on.
-   *
-   * @return An ArrayList of all destinations that the knight can move to.
+   * Add a pawn move if it ends on one of 'targets'. A move to the last rank is added as a promotion to a queen if
+   * 'queen' is set and as promotions to a knight, rook and bishop if 'underpromotions' is set; any other move is
+   * added if 'queen' is set.
    */
-  public ArrayList<Integer> generateKnightDestinations( int position ) {
-    ArrayList<Integer> destinations = new ArrayList<Integer>();
+  private int addPawnMove( int[] moves, int count, int position, int destination, int flags, long targets,
+                           boolean queen, boolean underpromotions ) {
+    if ( ( targets & ( 1L << toSquare( destination ) ) ) == 0 ) return ( count );
 
-    for ( int d : new int[]{ 18, 33, 31, 14, -18, -33, -31, -14 } ) {
-      destinations.add( position + d );
+    if ( destination >= A2 && destination < A8 ) {
+      if ( queen ) {
+        moves[ count++ ] = Moves.create( position, destination, flags );
+      }
+    } else {
+      if ( queen ) {
+        moves[ count++ ] = Moves.create( position, destination, QUEEN, flags );
+      }
+      if ( underpromotions ) {
+        moves[ count++ ] = Moves.create( position, destination, KNIGHT, flags );
+        moves[ count++ ] = Moves.create( position, destination, ROOK, flags );
+        moves[ count++ ] = Moves.create( position, destination, BISHOP, flags );
+      }
     }
 
-    return ( destinations );
+    return ( count );
   }
 
   /**
-   * Generate the destinations for a bishop located at 'position'.
+   * Add the castling moves the king on 'position' can make. The king must not be in check.
    *
-   * @param position    The index of the square the bishop is located on.
+   * @param moves       The buffer to write the packed moves into.
+   * @param count       The number of moves already in the buffer.
+   * @param position    The index of the square the king is on.
    *
-   * @return An ArrayList of all destinations that the bishop can move to.
+   * @return The number of moves in the buffer.
    */
-  public ArrayList<Integer> generateBishopDestinations( int position ) {
-    return ( generateUpDownDestinations( position, new int[]{ 15, 17, -15, -17 } ) );
+  private int addCastles( int[] moves, int count, int position ) {
+    if ( canCastleKingSide( position ) ) {
+      moves[ count++ ] = Moves.create( position, position + 2, Moves.CASTLE );
+    }
+    if ( canCastleQueenSide( position ) ) {
+      moves[ count++ ] = Moves.create( position, position - 2, Moves.CASTLE );
+    }
+
+    return ( count );
   }
 
   /**
-   * Generate the destinations for a rook located at 'position'.
-   *
-   * @param position    The index of the square the rook is located on.
+   * Can the king located at 'position' perform a king side castling move?
    *
-   * @return An ArrayList of all destinations that the rook can move to.
+   * @return True if the king can castle, false otherwise.
    */
-  public ArrayList<Integer> generateRookDestinations( int position ) {
-    return ( generateUpDownDestinations( position, new int[]{ 1, -1, 16, -16 } ) );
+  private boolean canCastleKingSide( int position ) {
+    return ( !hasPieceMoved( pieceAt( position ) ) && !kingInCheck() && pieceTypeAt( position + 3 ) == ROOK && !hasPieceMoved( pieceAt( position + 3 ) )
+             && squareEmpty( position + 1 ) && !squareAttacked( position + 1 )
+             && squareEmpty( position + 2 ) && !squareAttacked( position + 2 ) );
   }
 
   /**
-   * Generate the destinations for a queen located at 'position'.
-   *
-   * @param position    The index of the square the queen is located on.
+   * Can the king located at 'position' perform a queen side castling move?
    *
-   * @return An ArrayList of all destinations that the queen can move to.
+   * @return True if the king can castle, false otherwise.
    */
-  public ArrayList<Integer> generateQueenDestinations( int position ) {
-    return ( generateUpDownDestinations( position, new int[]{ 1, -1, 16, -16, 15, 17, -15, -17 } ) );
+  private boolean canCastleQueenSide( int position ) {
+    return ( !hasPieceMoved( pieceAt( position ) ) && !kingInCheck() && pieceTypeAt( position - 4 ) == ROOK && !hasPieceMoved( pieceAt( position - 4 ) )
+             && squareEmpty( position - 1 ) && !squareAttacked( position - 1 )
+             && squareEmpty( position - 2 ) && !squareAttacked( position - 2 )
+             && squareEmpty( position - 3 ) );
   }
 
+
   /**
    * Is there an enemy piece located at the given square index?
    *
@@ -955,30 +1627,6 @@ public class Board {
     return ( !squareEmpty( position ) && pieceColourAt( position ) != this.turnColour );
   }
 
-  /**
-   * Multipurpose method that can generate destinations for sliding pieces.
-   *
-   * @param position    The square index of the locations of the piece.
-   * @param directions  The directions in which the piece should be moving.
-   *
-   * @return An ArrayList of all destinations that the piece can move to.
-   */
-  private ArrayList<Integer> generateUpDownDestinations( int position, int[] directions ) {
-    ArrayList<Integer> destinations = new ArrayList<Integer>();
-
-    for ( int direction : directions ) {
-      for ( int i = 1; isValidDestination( position + i*direction ); i++ ) {
-        if ( enemyPieceAt( position + i*direction ) ) {
-          destinations.add( position + i*direction );
-          break;
-        }
-
-        destinations.add( position + i*direction );
-      }
-    }
-
-    return ( destinations );
-  }
 
   /*-----------------------------------------------*/
   /*--------------Evaluation Methods---------------*/
@@ -994,50 +1642,14 @@ public class Board {
   }
 
   /**
-   * Evaluate the positional score of each piece on the board.
+   * Evaluate the positional score of each piece of the current player. The scores are summed as the pieces move,
+   * so this takes constant time.
    *
-   * @return The material score for the current player.
+   * @return The positional score for the current player.
    */
   public int evaluatePiecePositions() {
-    int score = 0;
-
-    for ( int rank = 0; rank < 8; rank++ ) {
-      for ( int file = rank * 16 + 7; file >= rank * 16; file-- ) {
-        if ( !squareEmpty( file ) && pieceColourAt( file ) == this.turnColour ) {
-          if ( isWhiteTurn() ) {
-            score += piecePositionScore( pieceTypeAt( file ), file );
-          } else {
-            score -= piecePositionScore( pieceTypeAt( file ), file );
-          }
-        }
-      }
-    }
-
-    return isWhiteTurn() ? score : -score;
-  }
-
-  /**
-   * Give a score to a piece based on its position on the board.
-   *
-   * @return A score representing how good/bad the position of the piece is.
-   */
-  public int piecePositionScore( byte pieceType, int pos ) {
-    switch ( pieceType ) {
-      case PAWN:
-        return isWhiteTurn() ? WPAWN_POSITION_TABLE[ pos ] : BPAWN_POSITION_TABLE[ pos ];
-      case KNIGHT:
-        return KNIGHT_POSITION_TABLE[ pos ];
-      case BISHOP:
-        return isWhiteTurn() ? WBISHOP_POSITION_TABLE[ pos ] : BBISHOP_POSITION_TABLE[ pos ];
-      case ROOK:
-        return isWhiteTurn() ? WROOK_POSITION_TABLE[ pos ] : BROOK_POSITION_TABLE[ pos ];
-      case QUEEN:
-        return this.amountOfMoves < 15 ? OPENING_QUEEN_POSITION_TABLE[ pos ] : QUEEN_POSITION_TABLE[ pos ];
-      case KING:
-        return isWhiteTurn() ? WKING_POSITION_TABLE[ pos ] : BKING_POSITION_TABLE[ pos ];
-    }
-
-    return 0;
+    int[] scores = this.amountOfMoves < 15 ? this.openingPositionScores : this.laterPositionScores;
+    return ( scores[ this.turnColour >> 3 ] );
   }
 
   /**
@@ -1048,10 +1660,9 @@ public class Board {
   public int evaluatePieceDevelopment() {
     int score = 0;
 
-    int[] minorPiecePositions = new int[]{ 1, 2, 5, 6 };
     int turn = isWhiteTurn() ? 0 : 112;
 
-    for ( int pos : minorPiecePositions ) {
+    for ( int pos : MINOR_PIECE_POSITIONS ) {
       if ( !squareEmpty( pos + turn ) && !hasPieceMoved( pieceAt( pos + turn ) ) ) {
         if ( isWhiteTurn() ) {
           score -= 50;
@@ -1063,4 +1674,52 @@ public class Board {
 
     return isWhiteTurn() ? score : -score;
   }
+
+  /**
+   * Evaluate the pieces the opponent has left hanging: the most material the current player can win by capturing
+   * one of them, judged by static exchange evaluation with the least valuable attacker.
+   *
+   * @return The value of the best capture available to the current player, or 0 if none wins material.
+   */
+  public int evaluateHangingPieces() {
+    byte enemy = opponentColour();
+    long occupied = getOccupied();
+    int best = 0;
+
+    for ( long targets = getColourPieces( enemy ) & ~this.pieces[ KING | enemy ]; targets != 0; targets &= targets - 1 ) {
+      int square = Long.numberOfTrailingZeros( targets );
+      long attackers = allAttackers( square, occupied ) & getColourPieces( this.turnColour );
+      if ( attackers == 0 ) continue;
+
+      for ( byte pieceType = PAWN; pieceType <= KING; pieceType++ ) {
+        long from = attackers & this.pieces[ pieceType | this.turnColour ];
+        if ( from != 0 ) {
+          int captured = pieceValue( pieceTypeAt( toPosition( square ) ) );
+          best = Math.max( best, exchange( square, captured, pieceValue( pieceType ), occupied & ~( from & -from ), enemy ) );
+          break;
+        }
+      }
+    }
+
+    return ( best );
+  }
+
+  /**
+   * The state needed to take back a single move: every square the move changed, together with the board fields
+   * that cannot be recomputed cheaply.
+   */
+  private static class Undo {
+    int previousMove;
+    int whiteKingPosition;
+    int blackKingPosition;
+    int score;
+    int amountOfMoves;
+    int halfmoveClock;
+    long hash;
+    ArrayList<Move> validMoves;
+    byte capturedPiece;
+    int[] changedSquares = new int[ 8 ];
+    byte[] changedPieces = new byte[ 8 ];
+    int changes;
+  }
 }
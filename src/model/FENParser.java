@@ -0,0 +1,162 @@
+package model;
+
+import static lookup.Pieces.*;
+import static lookup.Coordinates.*;
+
+/**
+ * Parser from Forsyth-Edwards Notation (FEN) into a Board.
+ *
+ * <p>Unlike the .j format read by IOParser, FEN records the player to move, the castling rights and the en passant
+ * square, so any legal position can be set up. The board keeps no castling rights or en passant square of its own;
+ * they are expressed through the MOVED bits of the kings and rooks and through the previous move.</p>
+ *
+ * @author Gary Blackwood
+ */
+public class FENParser {
+
+  // The starting position.
+  public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+  private static final String PIECE_LETTERS = " PNBRQK  pnbrqk";
+
+  private FENParser() {
+  }
+
+  /**
+   * Create a board holding the position described by a FEN string. The halfmove clock and fullmove number may be
+   * left out.
+   *
+   * @param fen    The position in Forsyth-Edwards Notation.
+   *
+   * @return A board holding the position.
+   *
+   * @throws IllegalArgumentException if 'fen' is not a valid FEN string.
+   */
+  public static Board parse( String fen ) {
+    String[] fields = fen.trim().split( "\\s+" );
+    if ( fields.length < 4 ) {
+      throw new IllegalArgumentException( "FEN needs at least four fields: " + fen );
+    }
+
+    byte[] squares = parsePieces( fields[ 0 ], fen );
+
+    byte turnColour;
+    if ( fields[ 1 ].equals( "w" ) ) {
+      turnColour = WHITE;
+    } else if ( fields[ 1 ].equals( "b" ) ) {
+      turnColour = BLACK;
+    } else {
+      throw new IllegalArgumentException( "Invalid side to move in FEN: " + fen );
+    }
+
+    parseCastlingRights( squares, fields[ 2 ], fen );
+    Move previousMove = parseEnPassant( fields[ 3 ], turnColour, fen );
+
+    int halfmoveClock = 0;
+    if ( fields.length > 4 ) {
+      try {
+        halfmoveClock = Math.max( 0, Integer.parseInt( fields[ 4 ] ) );
+      } catch ( NumberFormatException e ) {
+        throw new IllegalArgumentException( "Invalid halfmove clock in FEN: " + fen );
+      }
+    }
+
+    int fullMoves = 1;
+    if ( fields.length > 5 ) {
+      try {
+        fullMoves = Math.max( 1, Integer.parseInt( fields[ 5 ] ) );
+      } catch ( NumberFormatException e ) {
+        throw new IllegalArgumentException( "Invalid fullmove number in FEN: " + fen );
+      }
+    }
+    int amountOfMoves = ( fullMoves - 1 ) * 2 + ( turnColour == BLACK ? 1 : 0 );
+
+    return ( new Board( squares, turnColour, previousMove, amountOfMoves, halfmoveClock ) );
+  }
+
+  /**
+   * Read the piece placement field. Every piece is marked as moved except those on their starting squares, and
+   * kings and rooks are then unmarked again by the castling rights.
+   */
+  private static byte[] parsePieces( String placement, String fen ) {
+    byte[] squares = new byte[ 128 ];
+    byte[] start = new Board().getSquares();
+
+    String[] ranks = placement.split( "/" );
+    if ( ranks.length != 8 ) {
+      throw new IllegalArgumentException( "FEN needs eight ranks: " + fen );
+    }
+
+    for ( int i = 0; i < 8; i++ ) {
+      int position = ( 7 - i ) * 16;
+      int end = position + 8;
+      for ( char c : ranks[ i ].toCharArray() ) {
+        if ( c >= '1' && c <= '8' ) {
+          position += c - '0';
+        } else {
+          int piece = PIECE_LETTERS.indexOf( c );
+          if ( piece <= 0 || position >= end ) {
+            throw new IllegalArgumentException( "Invalid rank '" + ranks[ i ] + "' in FEN: " + fen );
+          }
+          byte type = (byte)( piece & 0x7 );
+          squares[ position ] = (byte) piece;
+          if ( start[ position ] != piece || type == KING || type == ROOK ) {
+            squares[ position ] |= MOVED;
+          }
+          position++;
+        }
+      }
+
+      if ( position != end ) {
+        throw new IllegalArgumentException( "Invalid rank '" + ranks[ i ] + "' in FEN: " + fen );
+      }
+    }
+
+    return ( squares );
+  }
+
+  /**
+   * Clear the MOVED bits of the kings and rooks that can still castle.
+   */
+  private static void parseCastlingRights( byte[] squares, String rights, String fen ) {
+    if ( rights.equals( "-" ) ) return;
+
+    for ( char c : rights.toCharArray() ) {
+      switch ( c ) {
+        case 'K': unmove( squares, E1, KING ); unmove( squares, H1, ROOK ); break;
+        case 'Q': unmove( squares, E1, KING ); unmove( squares, A1, ROOK ); break;
+        case 'k': unmove( squares, E8, BKING ); unmove( squares, H8, BROOK ); break;
+        case 'q': unmove( squares, E8, BKING ); unmove( squares, A8, BROOK ); break;
+        default:
+          throw new IllegalArgumentException( "Invalid castling rights in FEN: " + fen );
+      }
+    }
+  }
+
+  /**
+   * Clear the MOVED bit of 'piece' if it stands on 'position'.
+   */
+  private static void unmove( byte[] squares, int position, byte piece ) {
+    if ( ( squares[ position ] & ~MOVED ) == piece ) {
+      squares[ position ] = piece;
+    }
+  }
+
+  /**
+   * Turn the en passant square into the pawn double step that must have been the previous move.
+   */
+  private static Move parseEnPassant( String square, byte turnColour, String fen ) {
+    if ( square.equals( "-" ) ) return ( null );
+
+    if ( !square.matches( "[a-h][36]" ) ) {
+      throw new IllegalArgumentException( "Invalid en passant square in FEN: " + fen );
+    }
+
+    int position = Move.notationToIndex( square );
+    if ( turnColour == WHITE ) {
+      return ( new Move( position + 16, position - 16 ) );
+    }
+
+    return ( new Move( position - 16, position + 16 ) );
+  }
+}
@@ -1,5 +1,7 @@
 package model;
 
+import static lookup.Pieces.*;
+
 /**
  * The move class represents a move in a chess game.
  *
@@ -9,6 +11,7 @@ public class Move {
 
   private int from;
   private int to;
+  private byte promotion;
 
   /**
    * Initialise and create a new Move object that represents the move as specified
@@ -18,8 +21,20 @@ public class Move {
    * @param to      The array index of the square that a piece is moving to, its destination.
    */
   public Move( int from, int to ) {
+    this( from, to, EMPTY );
+  }
+
+  /**
+   * Initialise and create a new Move object for a pawn that promotes to something other than a queen.
+   *
+   * @param from         The array index of the square that the pawn is moving from.
+   * @param to           The array index of the square on the last rank that the pawn is moving to.
+   * @param promotion    The type of piece the pawn becomes: KNIGHT, BISHOP or ROOK.
+   */
+  public Move( int from, int to, byte promotion ) {
     this.from = from;
     this.to = to;
+    this.promotion = promotion;
   }
 
   /**
@@ -40,6 +55,16 @@ public class Move {
     return ( this.to );
   }
 
+  /**
+   * Retreive the type of piece a pawn is underpromoted to. A pawn that reaches the last rank with a move that has
+   * no promotion piece becomes a queen.
+   *
+   * @return The piece type of the promotion, or EMPTY if the move is not an underpromotion.
+   */
+  public byte promotion() {
+    return ( this.promotion );
+  }
+
   public String getGuiString(){
     return (indexToNotation(this.from)) + "-" + indexToNotation (this.to);
   }
@@ -56,11 +81,33 @@ public class Move {
     }
 
     Move otherMove = (Move) other;
-    return ( this.to == otherMove.to() && this.from == otherMove.from() );
+    return ( this.to == otherMove.to() && this.from == otherMove.from() && this.promotion == otherMove.promotion() );
   }
 
   public String toString() {
-    return ( "Move(" + indexToNotation( this.from ) + " " + indexToNotation( this.to ) + ")" );
+    return ( "Move(" + indexToNotation( this.from ) + " " + indexToNotation( this.to ) + promotionSuffix() + ")" );
+  }
+
+  /**
+   * The move in coordinate notation, such as "e2e4" or "a7a8n", as used by perft and engine protocols.
+   *
+   * @return The move in coordinate notation.
+   */
+  public String toCoordinateString() {
+    return ( indexToNotation( this.from ) + indexToNotation( this.to ) + promotionSuffix() );
+  }
+
+  /**
+   * The letter of the underpromotion piece, or nothing if the move is not an underpromotion.
+   */
+  private String promotionSuffix() {
+    switch ( this.promotion ) {
+      case KNIGHT: return ( "n" );
+      case BISHOP: return ( "b" );
+      case ROOK:   return ( "r" );
+    }
+
+    return ( "" );
   }
   
 
@@ -0,0 +1,221 @@
+package model;
+
+import static lookup.Pieces.*;
+
+/**
+ * Puts moves into the order in which the search should try them, so that alpha-beta finds cutoffs early.
+ *
+ * <p>The best move from the transposition table is tried first, then captures with the most valuable victim and the
+ * least valuable attacker first (MVV-LVA), then the two killer moves of the ply, which recently caused a cutoff in a
+ * sibling position, then the remaining quiet moves ordered by the history heuristic: how often, and how deep, each
+ * from/to pair has caused a cutoff so far. Captures that static exchange evaluation shows to lose material come
+ * last, the least losing first.</p>
+ *
+ * @author Gary Blackwood
+ */
+public class MoveOrderer {
+
+  // The number of plies from the root for which killer moves are kept.
+  public static final int MAX_PLY = 128;
+
+  private static final int HASH_MOVE_SCORE = 1000000;
+  private static final int CAPTURE_SCORE = 500000;
+  private static final int FIRST_KILLER_SCORE = 400000;
+  private static final int SECOND_KILLER_SCORE = 300000;
+  // History scores are halved whenever one passes this, so they always rank below the killers.
+  private static final int HISTORY_LIMIT = 200000;
+
+  private int[][] killers;
+  private int[][] history;
+  private int[] scores;
+  private long betaCutoffs;
+  private long firstMoveBetaCutoffs;
+
+  /**
+   * Create a new move orderer with no killer moves and an empty history.
+   */
+  public MoveOrderer() {
+    this.killers = new int[ MAX_PLY ][ 2 ];
+    this.history = new int[ 128 ][ 128 ];
+    this.scores = new int[ Moves.MAX_MOVES ];
+  }
+
+  /**
+   * Prepare for a new search: forget the killer moves, age the history so that it favours what is learned next, and
+   * reset the cutoff statistics.
+   */
+  public void newSearch() {
+    for ( int[] plyKillers : this.killers ) {
+      plyKillers[ 0 ] = 0;
+      plyKillers[ 1 ] = 0;
+    }
+    ageHistory();
+
+    this.betaCutoffs = 0;
+    this.firstMoveBetaCutoffs = 0;
+  }
+
+  /**
+   * Sort moves into the order they should be searched in.
+   *
+   * @param board    The position the moves are played in.
+   * @param moves    The packed moves to sort.
+   * @param count    The number of moves in 'moves'.
+   * @param entry    A packed result from the transposition table for the position, or 0.
+   * @param ply      The number of plies from the root, or -1 if killer moves should not be used.
+   */
+  public void order( Board board, int[] moves, int count, long entry, int ply ) {
+    int[] scores = this.scores;
+    for ( int i = 0; i < count; i++ ) {
+      scores[ i ] = score( board, moves[ i ], entry, ply );
+    }
+
+    // Insertion sort: move lists are short, and it keeps equally scored moves in generation order.
+    for ( int i = 1; i < count; i++ ) {
+      int move = moves[ i ];
+      int score = scores[ i ];
+      int j = i - 1;
+      for ( ; j >= 0 && scores[ j ] < score; j-- ) {
+        scores[ j + 1 ] = scores[ j ];
+        moves[ j + 1 ] = moves[ j ];
+      }
+      scores[ j + 1 ] = score;
+      moves[ j + 1 ] = move;
+    }
+  }
+
+  /**
+   * Record that a move caused a beta cutoff. Quiet moves become killers for the ply and gain history.
+   *
+   * @param board    The position the move was played in.
+   * @param move     The packed move that caused the cutoff.
+   * @param depth    The remaining depth at which the cutoff happened.
+   * @param ply      The number of plies from the root.
+   * @param index    The position of the move in the ordered move list.
+   */
+  public void cutoff( Board board, int move, int depth, int ply, int index ) {
+    this.betaCutoffs++;
+    if ( index == 0 ) {
+      this.firstMoveBetaCutoffs++;
+    }
+
+    if ( Moves.isCapture( move ) ) {
+      return;
+    }
+
+    int packedMove = move & Moves.KEY_MASK;
+    if ( ply >= 0 && ply < MAX_PLY && this.killers[ ply ][ 0 ] != packedMove ) {
+      this.killers[ ply ][ 1 ] = this.killers[ ply ][ 0 ];
+      this.killers[ ply ][ 0 ] = packedMove;
+    }
+
+    int from = Moves.from( move );
+    int to = Moves.to( move );
+    this.history[ from ][ to ] += depth * depth;
+    if ( this.history[ from ][ to ] > HISTORY_LIMIT ) {
+      ageHistory();
+    }
+  }
+
+  /**
+   * How many beta cutoffs have there been since the search started?
+   *
+   * @return The number of beta cutoffs.
+   */
+  public long getBetaCutoffs() {
+    return ( this.betaCutoffs );
+  }
+
+  /**
+   * How many beta cutoffs were caused by the first move searched?
+   *
+   * @return The number of first move beta cutoffs.
+   */
+  public long getFirstMoveBetaCutoffs() {
+    return ( this.firstMoveBetaCutoffs );
+  }
+
+  /**
+   * What fraction of beta cutoffs were caused by the first move searched? Well ordered searches reach 0.9 or more.
+   *
+   * @return The first move cutoff rate, or 0 if there have been no cutoffs.
+   */
+  public double getFirstMoveCutoffRate() {
+    return ( this.betaCutoffs == 0 ? 0 : (double) this.firstMoveBetaCutoffs / this.betaCutoffs );
+  }
+
+  /**
+   * Give a capture a score, higher scores being searched first.
+   *
+   * @param board    The position the move is played in.
+   * @param move     The packed capture.
+   *
+   * @return The MVV-LVA score of the capture, or the material it loses, which is negative, if it loses material.
+   */
+  public int captureScore( Board board, int move ) {
+    byte victim = Moves.isEnPassant( move ) ? PAWN : board.pieceTypeAt( Moves.to( move ) );
+    byte attacker = board.pieceTypeAt( Moves.from( move ) );
+    if ( Board.pieceValue( victim ) < Board.pieceValue( attacker ) ) {
+      int see = board.see( move );
+      if ( see < 0 ) return ( see );
+    }
+
+    return ( CAPTURE_SCORE + victim * 8 - attacker );
+  }
+
+  /**
+   * Give a quiet move its history score, higher scores being searched first.
+   *
+   * @param move    The packed move.
+   *
+   * @return The history score of the move's from/to pair.
+   */
+  public int historyScore( int move ) {
+    return ( this.history[ Moves.from( move ) ][ Moves.to( move ) ] );
+  }
+
+  /**
+   * Return one of the two killer moves of a ply.
+   *
+   * @param ply     The number of plies from the root.
+   * @param slot    0 for the most recent killer, 1 for the one before.
+   *
+   * @return The killer move masked with Moves.KEY_MASK, or Moves.NONE.
+   */
+  public int getKiller( int ply, int slot ) {
+    return ( ply >= 0 && ply < MAX_PLY ? this.killers[ ply ][ slot ] : Moves.NONE );
+  }
+
+  /**
+   * Give a move a score, higher scores being searched first.
+   */
+  private int score( Board board, int move, long entry, int ply ) {
+    if ( entry != 0 && TranspositionTable.isBestMove( entry, move ) ) {
+      return ( HASH_MOVE_SCORE );
+    }
+
+    if ( Moves.isCapture( move ) ) {
+      return ( captureScore( board, move ) );
+    }
+
+    int packedMove = move & Moves.KEY_MASK;
+    if ( getKiller( ply, 0 ) == packedMove ) {
+      return ( FIRST_KILLER_SCORE );
+    } else if ( getKiller( ply, 1 ) == packedMove ) {
+      return ( SECOND_KILLER_SCORE );
+    }
+
+    return ( historyScore( move ) );
+  }
+
+  /**
+   * Halve every history score.
+   */
+  private void ageHistory() {
+    for ( int[] fromHistory : this.history ) {
+      for ( int to = 0; to < fromHistory.length; to++ ) {
+        fromHistory[ to ] /= 2;
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package model;
+
+/**
+ * Hands out the legal moves of a position one at a time, generating them in stages so that the moves after a beta
+ * cutoff are never generated.
+ *
+ * <p>The stages follow the order of the MoveOrderer: first the best move from the transposition table, then the
+ * captures that do not lose material, best first, then the two killer moves of the ply, then the quiet moves by
+ * their history scores, and last the captures that lose material. Captures are only generated if the hash move did
+ * not cause a cutoff, and quiet moves only if no capture or killer did. The hash move and killers come from other
+ * positions, so they are checked for legality before being handed out, and are not handed out again later.</p>
+ *
+ * <p>A picker is reused for every position searched at one ply, so that the search allocates nothing.</p>
+ *
+ * @author Gary Blackwood
+ */
+public class MovePicker {
+
+  private static final int HASH_MOVE = 0;
+  private static final int GENERATE_CAPTURES = 1;
+  private static final int GOOD_CAPTURES = 2;
+  private static final int FIRST_KILLER = 3;
+  private static final int SECOND_KILLER = 4;
+  private static final int GENERATE_QUIETS = 5;
+  private static final int QUIETS = 6;
+  private static final int BAD_CAPTURES = 7;
+  private static final int DONE = 8;
+
+  private MoveOrderer orderer;
+  private Board board;
+  private int ply;
+  private int stage;
+  private int hashMove;
+  private int firstKiller;
+  private int secondKiller;
+  private int[] captures;
+  private int[] captureScores;
+  private int captureCount;
+  private int captureIndex;
+  private int[] quiets;
+  private int[] quietScores;
+  private int quietCount;
+  private int quietIndex;
+
+  /**
+   * Create a move picker that orders moves with the killers and history of 'orderer'.
+   *
+   * @param orderer    The move orderer of the search.
+   */
+  public MovePicker( MoveOrderer orderer ) {
+    this.orderer = orderer;
+    this.captures = new int[ Moves.MAX_MOVES ];
+    this.captureScores = new int[ Moves.MAX_MOVES ];
+    this.quiets = new int[ Moves.MAX_MOVES ];
+    this.quietScores = new int[ Moves.MAX_MOVES ];
+  }
+
+  /**
+   * Start handing out the moves of a new position.
+   *
+   * @param board       The position. It must not change between calls to next, other than by moves that are
+   *                    taken back before the next call.
+   * @param hashMove    The best move stored in the transposition table for the position, or Moves.NONE.
+   * @param ply         The number of plies from the root, which selects the killer moves.
+   */
+  public void init( Board board, int hashMove, int ply ) {
+    this.board = board;
+    this.hashMove = hashMove;
+    this.ply = ply;
+    this.stage = HASH_MOVE;
+    this.firstKiller = Moves.NONE;
+    this.secondKiller = Moves.NONE;
+  }
+
+  /**
+   * Return the next move to search.
+   *
+   * @return The next legal packed move, or Moves.NONE once every move has been handed out.
+   */
+  @SuppressWarnings( "fallthrough" )
+  public int next() {
+    switch ( this.stage ) {
+      case HASH_MOVE:
+        this.stage = GENERATE_CAPTURES;
+        if ( this.hashMove != Moves.NONE ) {
+          this.hashMove = this.board.legalMove( this.hashMove );
+          if ( this.hashMove != Moves.NONE ) return ( this.hashMove );
+        }
+        // fall through
+
+      case GENERATE_CAPTURES:
+        this.captureCount = this.board.generateCaptures( this.captures );
+        for ( int i = 0; i < this.captureCount; i++ ) {
+          this.captureScores[ i ] = this.orderer.captureScore( this.board, this.captures[ i ] );
+        }
+        this.captureIndex = 0;
+        this.stage = GOOD_CAPTURES;
+        // fall through
+
+      case GOOD_CAPTURES:
+        while ( this.captureIndex < this.captureCount ) {
+          selectBest( this.captures, this.captureScores, this.captureIndex, this.captureCount );
+          // Captures that lose material have negative scores and wait until after the quiet moves.
+          if ( this.captureScores[ this.captureIndex ] < 0 ) break;
+
+          int move = this.captures[ this.captureIndex++ ];
+          if ( !sameMove( move, this.hashMove ) ) return ( move );
+        }
+        this.stage = FIRST_KILLER;
+        // fall through
+
+      case FIRST_KILLER:
+        this.stage = SECOND_KILLER;
+        this.firstKiller = killer( 0 );
+        if ( this.firstKiller != Moves.NONE ) return ( this.firstKiller );
+        // fall through
+
+      case SECOND_KILLER:
+        this.stage = GENERATE_QUIETS;
+        this.secondKiller = killer( 1 );
+        if ( this.secondKiller != Moves.NONE ) return ( this.secondKiller );
+        // fall through
+
+      case GENERATE_QUIETS:
+        this.quietCount = this.board.generateQuiets( this.quiets );
+        for ( int i = 0; i < this.quietCount; i++ ) {
+          this.quietScores[ i ] = this.orderer.historyScore( this.quiets[ i ] );
+        }
+        this.quietIndex = 0;
+        this.stage = QUIETS;
+        // fall through
+
+      case QUIETS:
+        while ( this.quietIndex < this.quietCount ) {
+          selectBest( this.quiets, this.quietScores, this.quietIndex, this.quietCount );
+          int move = this.quiets[ this.quietIndex++ ];
+          if ( !sameMove( move, this.hashMove ) && !sameMove( move, this.firstKiller )
+               && !sameMove( move, this.secondKiller ) ) {
+            return ( move );
+          }
+        }
+        this.stage = BAD_CAPTURES;
+        // fall through
+
+      case BAD_CAPTURES:
+        while ( this.captureIndex < this.captureCount ) {
+          selectBest( this.captures, this.captureScores, this.captureIndex, this.captureCount );
+          int move = this.captures[ this.captureIndex++ ];
+          if ( !sameMove( move, this.hashMove ) ) return ( move );
+        }
+        this.stage = DONE;
+    }
+
+    return ( Moves.NONE );
+  }
+
+  /**
+   * Return a killer move of the ply if it is a legal quiet move in this position that has not been handed out.
+   *
+   * @param slot    0 for the most recent killer, 1 for the one before.
+   *
+   * @return The killer move with its flags, or Moves.NONE.
+   */
+  private int killer( int slot ) {
+    int killer = this.orderer.getKiller( this.ply, slot );
+    if ( killer == Moves.NONE || sameMove( killer, this.hashMove ) ) return ( Moves.NONE );
+
+    int move = this.board.legalMove( killer );
+    return ( Moves.isCapture( move ) ? Moves.NONE : move );
+  }
+
+  /**
+   * Swap the highest scored move from 'start' onwards into 'start', keeping the scores in step.
+   */
+  private static void selectBest( int[] moves, int[] scores, int start, int end ) {
+    int best = start;
+    for ( int i = start + 1; i < end; i++ ) {
+      if ( scores[ i ] > scores[ best ] ) {
+        best = i;
+      }
+    }
+
+    int move = moves[ best ];
+    int score = scores[ best ];
+    moves[ best ] = moves[ start ];
+    scores[ best ] = scores[ start ];
+    moves[ start ] = move;
+    scores[ start ] = score;
+  }
+
+  /**
+   * Are two packed moves the same move, ignoring their flags? Moves.NONE matches nothing.
+   */
+  private static boolean sameMove( int move, int other ) {
+    return ( other != Moves.NONE && ( move & Moves.KEY_MASK ) == ( other & Moves.KEY_MASK ) );
+  }
+}
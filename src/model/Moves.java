@@ -0,0 +1,128 @@
+package model;
+
+import static lookup.Pieces.*;
+
+/**
+ * Moves packed into a single int, so that the search can generate and store them without creating objects.
+ *
+ * <p>Bits 0-6 hold the 0x88 index of the square the piece moves from and bits 7-13 the square it moves to. Bits
+ * 14-16 hold the type of piece a pawn promotes to, or EMPTY, and the bits above hold the flags. Zero is not a move,
+ * so it is used for "no move".</p>
+ *
+ * <p>Move lists are written into int arrays owned by the caller, which should hold at least MAX_MOVES moves.</p>
+ *
+ * @author Gary Blackwood
+ */
+public final class Moves {
+
+  // No move.
+  public static final int NONE = 0;
+
+  // No chess position has more legal moves than this.
+  public static final int MAX_MOVES = 256;
+
+  // The move captures a piece.
+  public static final int CAPTURE = 1 << 17;
+  // The move is a pawn capturing en passant.
+  public static final int EN_PASSANT = 1 << 18;
+  // The move is a king castling.
+  public static final int CASTLE = 1 << 19;
+  // The move is a pawn stepping two squares forward.
+  public static final int DOUBLE_PUSH = 1 << 20;
+
+  // The bits that tell moves apart in a position: the squares and the promotion.
+  public static final int KEY_MASK = ( 1 << 17 ) - 1;
+
+  private Moves() {
+  }
+
+  /**
+   * Pack a move that does not promote.
+   *
+   * @param from     The index of the square the piece moves from.
+   * @param to       The index of the square the piece moves to.
+   * @param flags    Any of CAPTURE, EN_PASSANT, CASTLE and DOUBLE_PUSH.
+   *
+   * @return The packed move.
+   */
+  public static int create( int from, int to, int flags ) {
+    return ( from | ( to << 7 ) | flags );
+  }
+
+  /**
+   * Pack a pawn move to the last rank.
+   *
+   * @param from         The index of the square the pawn moves from.
+   * @param to           The index of the square the pawn moves to.
+   * @param promotion    The type of piece the pawn becomes.
+   * @param flags        CAPTURE if the pawn captures, otherwise 0.
+   *
+   * @return The packed move.
+   */
+  public static int create( int from, int to, byte promotion, int flags ) {
+    return ( from | ( to << 7 ) | ( promotion << 14 ) | flags );
+  }
+
+  /**
+   * The square a packed move starts on.
+   *
+   * @param move    The packed move.
+   *
+   * @return The 0x88 index of the square.
+   */
+  public static int from( int move ) {
+    return ( move & 0x7F );
+  }
+
+  /**
+   * The square a packed move ends on.
+   *
+   * @param move    The packed move.
+   *
+   * @return The 0x88 index of the square.
+   */
+  public static int to( int move ) {
+    return ( ( move >>> 7 ) & 0x7F );
+  }
+
+  /**
+   * The type of piece a packed pawn move promotes to.
+   *
+   * @param move    The packed move.
+   *
+   * @return The piece type, or EMPTY if the move does not promote.
+   */
+  public static byte promotion( int move ) {
+    return ( (byte)( ( move >>> 14 ) & 0x7 ) );
+  }
+
+  public static boolean isCapture( int move ) {
+    return ( ( move & CAPTURE ) != 0 );
+  }
+
+  public static boolean isEnPassant( int move ) {
+    return ( ( move & EN_PASSANT ) != 0 );
+  }
+
+  public static boolean isCastle( int move ) {
+    return ( ( move & CASTLE ) != 0 );
+  }
+
+  public static boolean isDoublePush( int move ) {
+    return ( ( move & DOUBLE_PUSH ) != 0 );
+  }
+
+  /**
+   * Convert a packed move into a Move, for code outside the search such as the GUI.
+   *
+   * @param move    The packed move.
+   *
+   * @return The equivalent Move, or null for NONE.
+   */
+  public static Move toMove( int move ) {
+    if ( move == NONE ) return ( null );
+
+    byte promotion = promotion( move );
+    return ( new Move( from( move ), to( move ), promotion == QUEEN ? EMPTY : promotion ) );
+  }
+}
@@ -0,0 +1,306 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Counts the leaf nodes of the move generation tree of a position to a fixed depth (perft), which checks move
+ * generation against positions whose counts are known and measures how fast it is.
+ *
+ * <p>Deep counts can be shared out between threads, each searching some of the root moves on its own copy of the
+ * board, with the counts of subtrees cached by position so that transpositions are only counted once.</p>
+ *
+ * <p>Usage:</p>
+ * <pre>
+ *   java model.Perft [depth [threads]]       run the test suite, up to 'depth' plies where the count is known
+ *   java model.Perft divide depth [fen]      print the count below each move of a position
+ * </pre>
+ *
+ * <p>With a thread count the suite runs in parallel with a subtree cache; without one it runs serially.</p>
+ *
+ * @author Gary Blackwood
+ */
+public class Perft {
+
+  private static final int DEFAULT_SUITE_DEPTH = 4;
+  // The size of the subtree cache used by parallel perft, in megabytes.
+  private static final int CACHE_SIZE = 64;
+
+  // Standard test positions and their node counts at depth 1, 2, 3, ...
+  private static final String[] SUITE_POSITIONS = {
+    FENParser.START_POSITION,
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+  };
+  private static final long[][] SUITE_COUNTS = {
+    { 20, 400, 8902, 197281, 4865609, 119060324 },
+    { 48, 2039, 97862, 4085603, 193690690 },
+    { 14, 191, 2812, 43238, 674624, 11030083, 178633661 },
+    { 6, 264, 9467, 422333, 15833292 },
+    { 44, 1486, 62379, 2103487, 89941194 },
+    { 46, 2079, 89890, 3894594, 164075551 }
+  };
+
+  private Perft() {
+  }
+
+  /**
+   * Count the positions reached by playing every sequence of 'depth' valid moves from the current position.
+   *
+   * @param board    The position to count from. It is left as it was found.
+   * @param depth    The number of plies to play.
+   *
+   * @return The number of leaf positions.
+   */
+  public static long perft( Board board, int depth ) {
+    return ( perft( board, depth, newBuffers( depth ) ) );
+  }
+
+  /**
+   * Count like perft, generating the moves at each depth into buffers[ depth - 1 ].
+   */
+  private static long perft( Board board, int depth, int[][] buffers ) {
+    if ( depth == 0 ) return ( 1 );
+
+    int[] moves = buffers[ depth - 1 ];
+    int count = board.generateMoves( moves );
+    if ( depth == 1 ) return ( count );
+
+    long nodes = 0;
+    for ( int i = 0; i < count; i++ ) {
+      board.makeMove( moves[ i ] );
+      nodes += perft( board, depth - 1, buffers );
+      board.unmakeMove();
+    }
+
+    return ( nodes );
+  }
+
+  /**
+   * Count the positions reached by playing every sequence of 'depth' valid moves, sharing the root moves out between
+   * the threads of 'pool'. Each thread plays its moves on its own copy of the board, and the counts of subtrees are
+   * kept in 'cache' so that a position reached again by a different move order is not counted twice.
+   *
+   * @param board    The position to count from.
+   * @param depth    The number of plies to play.
+   * @param pool     The threads to count with.
+   * @param cache    The subtree cache, which may be shared between calls for the same move generator.
+   *
+   * @return The number of leaf positions.
+   */
+  public static long parallelPerft( Board board, final int depth, ForkJoinPool pool, final Cache cache ) {
+    if ( depth <= 1 ) return ( perft( board, depth ) );
+
+    int[] moves = new int[ Moves.MAX_MOVES ];
+    int count = board.generateMoves( moves );
+    List<ForkJoinTask<Long>> tasks = new ArrayList<ForkJoinTask<Long>>();
+    for ( int i = 0; i < count; i++ ) {
+      final int move = moves[ i ];
+      final Board copy = new Board( board );
+      tasks.add( pool.submit( new Callable<Long>() {
+        public Long call() {
+          copy.makeMove( move );
+          return ( hashedPerft( copy, depth - 1, cache, newBuffers( depth - 1 ) ) );
+        }
+      } ) );
+    }
+
+    long nodes = 0;
+    for ( ForkJoinTask<Long> task : tasks ) {
+      nodes += task.join();
+    }
+
+    return ( nodes );
+  }
+
+  /**
+   * Count like perft, but look up and store the count of every subtree in 'cache'.
+   */
+  private static long hashedPerft( Board board, int depth, Cache cache, int[][] buffers ) {
+    if ( depth <= 1 ) return ( perft( board, depth, buffers ) );
+
+    long nodes = cache.probe( board.getHash(), depth );
+    if ( nodes >= 0 ) return ( nodes );
+
+    nodes = 0;
+    int[] moves = buffers[ depth - 1 ];
+    int count = board.generateMoves( moves );
+    for ( int i = 0; i < count; i++ ) {
+      board.makeMove( moves[ i ] );
+      nodes += hashedPerft( board, depth - 1, cache, buffers );
+      board.unmakeMove();
+    }
+
+    cache.store( board.getHash(), depth, nodes );
+    return ( nodes );
+  }
+
+  /**
+   * Print the perft count below each valid move of the current position, and the total. Comparing these counts
+   * with those of a trusted move generator narrows a wrong total down to the move that causes it.
+   *
+   * @param board    The position to count from. It is left as it was found.
+   * @param depth    The number of plies to play, including the first move.
+   *
+   * @return The total number of leaf positions.
+   */
+  public static long divide( Board board, int depth ) {
+    long total = 0;
+    int[] moves = new int[ Moves.MAX_MOVES ];
+    int count = board.generateMoves( moves );
+    for ( int i = 0; i < count; i++ ) {
+      board.makeMove( moves[ i ] );
+      long nodes = perft( board, depth - 1 );
+      board.unmakeMove();
+
+      System.out.println( Moves.toMove( moves[ i ] ).toCoordinateString() + ": " + nodes );
+      total += nodes;
+    }
+
+    System.out.println( "Total: " + total );
+    return ( total );
+  }
+
+  /**
+   * Run perft on every position of the test suite, to at most 'maxDepth' plies, and report whether each count is
+   * right together with the nodes counted per second.
+   *
+   * @param maxDepth    The deepest count to check.
+   * @param threads     The number of threads to count with, or 0 to count serially without a cache.
+   *
+   * @return True if every count matched, false otherwise.
+   */
+  public static boolean runSuite( int maxDepth, int threads ) {
+    ForkJoinPool pool = threads > 0 ? new ForkJoinPool( threads ) : null;
+    Cache cache = threads > 0 ? new Cache( CACHE_SIZE ) : null;
+    boolean passed = true;
+    long totalNodes = 0;
+    long totalTime = 0;
+
+    for ( int i = 0; i < SUITE_POSITIONS.length; i++ ) {
+      Board board = FENParser.parse( SUITE_POSITIONS[ i ] );
+      System.out.println( SUITE_POSITIONS[ i ] );
+
+      for ( int depth = 1; depth <= Math.min( maxDepth, SUITE_COUNTS[ i ].length ); depth++ ) {
+        long start = System.nanoTime();
+        long nodes = pool != null ? parallelPerft( board, depth, pool, cache ) : perft( board, depth );
+        long time = System.nanoTime() - start;
+        totalNodes += nodes;
+        totalTime += time;
+
+        long expected = SUITE_COUNTS[ i ][ depth - 1 ];
+        passed &= nodes == expected;
+        System.out.println( String.format( "  depth %d: %12d %s %10d ms %12d nps", depth, nodes,
+                                           nodes == expected ? "ok  " : "FAIL (expected " + expected + ")",
+                                           time / 1000000, nodesPerSecond( nodes, time ) ) );
+      }
+    }
+
+    System.out.println( String.format( "%s: %d nodes in %d ms, %d nps", passed ? "Passed" : "FAILED", totalNodes,
+                                       totalTime / 1000000, nodesPerSecond( totalNodes, totalTime ) ) );
+    if ( pool != null ) {
+      pool.shutdown();
+    }
+    return ( passed );
+  }
+
+  /**
+   * Create a move buffer for each depth of a count.
+   */
+  private static int[][] newBuffers( int depth ) {
+    return ( new int[ Math.max( 1, depth ) ][ Moves.MAX_MOVES ] );
+  }
+
+  private static long nodesPerSecond( long nodes, long nanoseconds ) {
+    return ( nanoseconds == 0 ? 0 : nodes * 1000000000L / nanoseconds );
+  }
+
+  public static void main( String[] args ) {
+    if ( args.length > 0 && args[ 0 ].equals( "divide" ) ) {
+      if ( args.length < 2 ) {
+        System.err.println( "Usage: java model.Perft divide depth [fen]" );
+        System.exit( 2 );
+      }
+      StringBuilder fen = new StringBuilder();
+      for ( int i = 2; i < args.length; i++ ) {
+        fen.append( args[ i ] ).append( ' ' );
+      }
+      Board board = FENParser.parse( args.length > 2 ? fen.toString() : FENParser.START_POSITION );
+      divide( board, Integer.parseInt( args[ 1 ] ) );
+      return;
+    }
+
+    int depth = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : DEFAULT_SUITE_DEPTH;
+    int threads = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 0;
+    System.exit( runSuite( depth, threads ) ? 0 : 1 );
+  }
+
+  /**
+   * A fixed size table of subtree counts keyed by the Zobrist hash of a position and the depth counted, which
+   * several threads may share without locking.
+   *
+   * <p>As in the TranspositionTable, each entry is stored as two longs: the count packed with its depth, and the
+   * hash XORed with that packed count. An entry torn by two threads writing at once fails to match and is treated
+   * as a miss. Entries are always replaced.</p>
+   */
+  public static class Cache {
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private long[] keys;
+    private long[] data;
+    private int mask;
+
+    /**
+     * Create a new cache that uses at most the given amount of memory.
+     *
+     * @param megabytes    The size of the cache in megabytes.
+     */
+    public Cache( int megabytes ) {
+      long entries = Math.max( 1, megabytes ) * BYTES_PER_MEGABYTE / BYTES_PER_ENTRY;
+      entries = Math.min( Long.highestOneBit( entries ), 1 << 30 );
+
+      this.keys = new long[ (int) entries ];
+      this.data = new long[ (int) entries ];
+      this.mask = (int) entries - 1;
+    }
+
+    /**
+     * Look up the count of a subtree.
+     *
+     * @param hash     The Zobrist hash of the position at the root of the subtree.
+     * @param depth    The depth counted.
+     *
+     * @return The count, or -1 if the cache does not hold it.
+     */
+    public long probe( long hash, int depth ) {
+      int index = (int) hash & this.mask;
+      long entry = this.data[ index ];
+      if ( entry != 0 && ( this.keys[ index ] ^ entry ) == hash && ( entry & 0xFF ) == depth ) {
+        return ( entry >>> 8 );
+      }
+
+      return ( -1 );
+    }
+
+    /**
+     * Store the count of a subtree.
+     *
+     * @param hash     The Zobrist hash of the position at the root of the subtree.
+     * @param depth    The depth counted, which must be at least 1.
+     * @param nodes    The count.
+     */
+    public void store( long hash, int depth, long nodes ) {
+      int index = (int) hash & this.mask;
+      long entry = ( nodes << 8 ) | depth;
+      this.keys[ index ] = hash ^ entry;
+      this.data[ index ] = entry;
+    }
+  }
+}
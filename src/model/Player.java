@@ -51,7 +51,7 @@ public abstract class Player {
     this.name = name;
   }
 
-  protected void setTimeRemaining( long timeRemaining ) {
+  public void setTimeRemaining( long timeRemaining ) {
     this.timeRemaining = timeRemaining;
   }
 
@@ -1,7 +1,7 @@
 package model;
 import static lookup.Pieces.*;
 
-import java.util.ArrayList;
+import lookup.Bitboards;
 
 /**
  * Parser from SAN notation into jMove notation (jMove is our move type)
@@ -42,76 +42,36 @@ public class SANParser {
   private int decide( String san, byte colour ) {
     switch ( san.charAt( 0 ) ) {
       case 'K':
-        return getKingOrigin( san.substring( 1 ), colour );
+        return getOrigin( san.substring( 1 ), KING, colour );
       case 'Q':
-        return getQueenOrigin( san.substring( 1 ), colour );
+        return getOrigin( san.substring( 1 ), QUEEN, colour );
       case 'B':
-        return getBishopOrigin( san.substring( 1 ), colour );
+        return getOrigin( san.substring( 1 ), BISHOP, colour );
       case 'N':
-        return getKnightOrigin( san.substring( 1 ), colour );
+        return getOrigin( san.substring( 1 ), KNIGHT, colour );
       case 'R':
-        return getRookOrigin( san.substring( 1 ), colour );
+        return getOrigin( san.substring( 1 ), ROOK, colour );
       default:
         return getPawnOrigin( san, colour );
     }
   }
 
   /**
-   * generateRookDestinations(to) for each destination if (
-   * board.pieceTypeAt(destination) == ROOK && board.pieceColourAt(colour){ if
-   * (from.length ==2) return destination; if (from.length ==3){ else if (
-   * from.charAt(0).isAlpha && from.charAt(0) == destination.file ) return
-   * destination; else if ( from charAt(0).isNum && from.charAt(0) ==
-   * destination.rank ) return destination; else if (from.charAt(0) ==
-   * destination.file && from.charAt(1) == destination.rank return destination;
-   * }
-   */
-
-  private int getRookOrigin( String san, byte colour ) {
-
-    ArrayList<Integer> destinations = board.generateRookDestinations( to );
-    for ( int origin : destinations ) {
-      if ( board.pieceTypeAt( origin ) == ROOK
-          && board.pieceColourAt( origin ) == colour ) {
-        if ( san.length() == 2 )
-          return origin;
-        else if ( san.length() == 3 ) {
-          if ( san.substring( 0, 1 ).matches( "[a-h]" )
-              && san.charAt( 0 ) == getFile( origin ) )
-            return origin;
-          else if ( san.substring( 0, 1 ).matches( "[0-7]" )
-              && san.charAt( 0 ) == getRank( origin ) ) return origin;
-        } else if ( san.charAt( 0 ) == getFile( origin )
-            && san.charAt( 0 ) == getRank( origin ) ) return origin;
-      }
-    }
-
-    return - 1;
-  }
-
-  /**
+   * Find the piece of the given type and colour that attacks the destination, visiting only the pieces of that
+   * kind rather than every square of the board.
    * 
-   * @param san
+   * @param san - the move with the piece letter removed, such as e3, fe3, 3e3 or f3e3
+   * @param pieceType
    * @param colour
-   * @return origin of knight
+   * @return origin of the piece, or -1 if there is none
    */
+  private int getOrigin( String san, byte pieceType, byte colour ) {
+    int[] origins = new int[ 16 ];
+    int count = board.getPiecePositions( ( byte ) ( pieceType | colour ), origins );
 
-  private int getKnightOrigin( String san, byte colour ) {
-
-    ArrayList<Integer> destinations = board.generateKnightDestinations( to );
-    for ( int origin : destinations ) {
-      if ( board.pieceTypeAt( origin ) == KNIGHT
-          && board.pieceColourAt( origin ) == colour ) {
-        if ( san.length() == 2 )
-          return origin;
-        else if ( san.length() == 3 ) {
-          if ( san.substring( 0, 1 ).matches( "[a-h]" )
-              && san.charAt( 0 ) == getFile( origin ) )
-            return origin;
-          else if ( san.substring( 0, 1 ).matches( "[0-7]" )
-              && san.charAt( 0 ) == getRank( origin ) ) return origin;
-        } else if ( san.charAt( 0 ) == getFile( origin )
-            && san.charAt( 0 ) == getRank( origin ) ) return origin;
+    for ( int i = 0; i < count; i++ ) {
+      if ( board.attacks( origins[ i ], to ) && matchesOrigin( san, origins[ i ] ) ) {
+        return origins[ i ];
       }
     }
 
@@ -119,119 +79,48 @@ public class SANParser {
   }
 
   /**
+   * A pawn moving without a capture comes from the same file, one or two squares back; a capturing pawn is named by
+   * its file and attacks the destination.
    * 
    * @param san
    * @param colour
-   * @return origin of bishop
+   * @return origin of pawn, or -1 if there is none
    */
-  private int getBishopOrigin( String san, byte colour ) {
-    ArrayList<Integer> destinations = board.generateBishopDestinations( to );
-    for ( int origin : destinations ) {
-      if ( board.pieceTypeAt( origin ) == BISHOP
-          && board.pieceColourAt( origin ) == colour ) {
-        if ( san.length() == 2 )
-          return origin;
-        else if ( san.length() == 3 ) {
-          if ( san.substring( 0, 1 ).matches( "[a-h]" )
-              && san.charAt( 0 ) == getFile( origin ) )
-            return origin;
-          else if ( san.substring( 0, 1 ).matches( "[0-7]" )
-              && san.charAt( 0 ) == getRank( origin ) ) return origin;
-        } else if ( san.charAt( 0 ) == getFile( origin )
-            && san.charAt( 0 ) == getRank( origin ) ) return origin;
-      }
-    }
-
-    return - 1;
-  }
-
-  /**
-   * 
-   * @param san
-   * @param colour
-   * @return origin of queen
-   */
-
-  private int getQueenOrigin( String san, byte colour ) {
-    ArrayList<Integer> destinations = board.generateQueenDestinations( to );
-    for ( int origin : destinations ) {
-      if ( board.pieceTypeAt( origin ) == QUEEN
-          && board.pieceColourAt( origin ) == colour ) {
-        if ( san.length() == 2 )
-          return origin;
-        else if ( san.length() == 3 ) {
-          if ( san.substring( 0, 1 ).matches( "[a-h]" )
-              && san.charAt( 0 ) == getFile( origin ) )
-            return origin;
-          else if ( san.substring( 0, 1 ).matches( "[0-7]" )
-              && san.charAt( 0 ) == getRank( origin ) ) return origin;
-        } else if ( san.charAt( 0 ) == getFile( origin )
-            && san.charAt( 0 ) == getRank( origin ) ) return origin;
-      }
+  private int getPawnOrigin( String san, byte colour ) {
+    if ( san.length() == 2 ) {
+      int back = colour == WHITE ? -16 : 16;
+      byte pawn = ( byte ) ( PAWN | colour );
+      if ( ( board.getPieces( pawn ) & bit( to + back ) ) != 0 ) return to + back;
+      if ( ( board.getOccupied() & bit( to + back ) ) == 0
+          && ( board.getPieces( pawn ) & bit( to + 2 * back ) ) != 0 ) return to + 2 * back;
+      return - 1;
     }
 
-    return - 1;
+    return getOrigin( san, PAWN, colour );
   }
 
   /**
+   * Does the origin fit the file and rank, if any, given before the destination?
    * 
-   * @param san
-   * @param colour
-   * @return origin of king
+   * @param san - the move with the piece letter removed
+   * @param origin
+   * @return true if the origin matches
    */
-
-  private int getKingOrigin( String san, byte colour ) {
-    ArrayList<Integer> destinations = board.generateKingDestinations( to );
-    for ( int origin : destinations ) {
-      if ( board.pieceTypeAt( origin ) == KING
-          && board.pieceColourAt( origin ) == colour ) {
-        if ( san.length() == 2 )
-          return origin;
-        else if ( san.length() == 3 ) {
-          if ( san.substring( 0, 1 ).matches( "[a-h]" )
-              && san.charAt( 0 ) == getFile( origin ) )
-            return origin;
-          else if ( san.substring( 0, 1 ).matches( "[0-7]" )
-              && san.charAt( 0 ) == getRank( origin ) ) return origin;
-        } else if ( san.charAt( 0 ) == getFile( origin )
-            && san.charAt( 0 ) == getRank( origin ) ) return origin;
-      }
+  private boolean matchesOrigin( String san, int origin ) {
+    for ( int i = 0; i < san.length() - 2; i++ ) {
+      char c = san.charAt( i );
+      if ( c >= 'a' && c <= 'h' && c != getFile( origin ) ) return false;
+      if ( c >= '1' && c <= '8' && c - '1' != getRank( origin ) ) return false;
     }
 
-    return - 1;
+    return true;
   }
 
   /**
-   * 
-   * @param san
-   * @param colour
-   * @return origin of pawn
+   * The bitboard bit of a square, or 0 if the index is off the board.
    */
-  private int getPawnOrigin( String san, byte colour ) {
-
-    ArrayList<Integer> destinations;
-    if ( colour == WHITE )
-      destinations = board.generateBlackPawnDestinations( to );
-    // Uses opposites colour generator as pawns can't move backwards
-    else destinations = board.generateWhitePawnDestinations( to );
-
-    for ( int origin : destinations ) {
-      if ( board.pieceTypeAt( origin ) == PAWN
-          && board.pieceColourAt( origin ) == colour ) {
-        if ( san.length() == 2 )
-          return origin;
-        else if ( san.length() == 3 ) {
-          if ( san.substring( 0, 1 ).matches( "[a-h]" )
-              && san.charAt( 0 ) == getFile( origin ) )
-            return origin;
-          else if ( san.substring( 0, 1 ).matches( "[0-7]" )
-              && san.charAt( 0 ) == getRank( origin ) ) return origin;
-        } else if ( san.charAt( 0 ) == getFile( origin )
-            && san.charAt( 0 ) == getRank( origin ) ) return origin;
-      }
-    }
-
-    return - 1;
+  private long bit( int position ) {
+    return ( ( position & 0x88 ) == 0 ? 1L << Bitboards.toSquare( position ) : 0 );
   }
 
   private char getFile( int position ) {
@@ -0,0 +1,70 @@
+package model;
+
+/**
+ * Measures how the Lazy SMP search scales with the number of threads. Each position is searched to a fixed depth
+ * with a fresh AI, so that every run starts with an empty transposition table, and the time to reach that depth and
+ * the nodes searched per second are reported for 1, 2, 4, 8 and 16 threads.
+ *
+ * <p>Usage: java model.SearchBenchmark [depth]</p>
+ *
+ * @author Gary Blackwood
+ */
+public class SearchBenchmark {
+
+  private static final int DEFAULT_DEPTH = 5;
+  private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+  // Test positions, given as the moves that reach them from the starting position.
+  private static final String[] POSITIONS = {
+    "",
+    "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6",
+    "d2d4 d7d5 c2c4 e7e6 b1c3 g8f6 c1g5 f8e7 e2e3 e8g8",
+    "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3 a7a6 c1e3 e7e5 d4b3 c8e6"
+  };
+
+  public static void main( String[] args ) {
+    int depth = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : DEFAULT_DEPTH;
+
+    System.out.println( "Lazy SMP to depth " + depth + ", " + Runtime.getRuntime().availableProcessors()
+                        + " processors available" );
+    System.out.println( String.format( "%8s %12s %12s %12s %8s", "threads", "time (ms)", "nodes", "nps", "speedup" ) );
+
+    long baseTime = 0;
+    for ( int threads : THREADS ) {
+      long time = 0;
+      long nodes = 0;
+
+      for ( String position : POSITIONS ) {
+        Board board = playMoves( position );
+        AI ai = new AI( depth, 2, board.getTurnColour(), "Benchmark", -1 );
+        ai.setParallelism( threads, AI.LAZY_SMP );
+
+        long start = System.nanoTime();
+        ai.getMove( board, new SearchLimits( depth, 0, 0 ) );
+        time += ( System.nanoTime() - start ) / 1000000;
+        nodes += ai.getNodes();
+        ai.setParallelism( 1 );
+      }
+
+      if ( threads == 1 ) {
+        baseTime = time;
+      }
+      long nps = time == 0 ? 0 : nodes * 1000 / time;
+      double speedup = time == 0 ? 0 : (double) baseTime / time;
+      System.out.println( String.format( "%8d %12d %12d %12d %8.2f", threads, time, nodes, nps, speedup ) );
+    }
+  }
+
+  /**
+   * Play a space separated list of moves such as "e2e4 e7e5" from the starting position.
+   */
+  private static Board playMoves( String moves ) {
+    Board board = new Board();
+    for ( String move : moves.trim().split( "\\s+" ) ) {
+      if ( move.isEmpty() ) continue;
+      board.makeMove( new Move( Move.notationToIndex( move.substring( 0, 2 ) ),
+                                Move.notationToIndex( move.substring( 2, 4 ) ) ) );
+    }
+    return ( board );
+  }
+}
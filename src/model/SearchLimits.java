@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * The limits within which the AI must choose a move.
+ *
+ * <p>The search deepens one ply at a time until the maximum depth has been searched or the time or node budget runs
+ * out, whichever comes first. A time or node budget of zero means that the budget is unlimited.</p>
+ *
+ * @author Gary Blackwood
+ */
+public class SearchLimits {
+
+  private int depth;
+  private long moveTime;
+  private long nodes;
+
+  /**
+   * Create a new set of search limits.
+   *
+   * @param depth       The deepest iteration to search.
+   * @param moveTime    The time allowed for the move in milliseconds, or 0 for no limit.
+   * @param nodes       The number of positions that may be visited, or 0 for no limit.
+   */
+  public SearchLimits( int depth, long moveTime, long nodes ) {
+    this.depth = depth;
+    this.moveTime = moveTime;
+    this.nodes = nodes;
+  }
+
+  /**
+   * What is the deepest iteration that may be searched?
+   *
+   * @return The maximum search depth.
+   */
+  public int getDepth() {
+    return ( this.depth );
+  }
+
+  /**
+   * How long may the search take?
+   *
+   * @return The time allowed in milliseconds, or 0 if there is no limit.
+   */
+  public long getMoveTime() {
+    return ( this.moveTime );
+  }
+
+  /**
+   * How many positions may the search visit?
+   *
+   * @return The node budget, or 0 if there is no limit.
+   */
+  public long getNodes() {
+    return ( this.nodes );
+  }
+}
@@ -0,0 +1,242 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size hash table of search results, keyed by the Zobrist hash of a position.
+ *
+ * <p>The table is split into buckets of two entries. The first entry of a bucket only gives way to a result searched
+ * at least as deep as the one it holds, so expensive results survive; the second entry is always replaced, so recent
+ * results are never lost. The number of buckets is a power of two so that a bucket is found by masking the hash.</p>
+ *
+ * <p>Each entry is stored as two longs: the packed result, which holds the score, best move, depth and bound type,
+ * and the hash of the position XORed with the packed result. A probe returns the packed result, which can be
+ * unpacked with the static accessors of this class.</p>
+ *
+ * <p>The table may be shared by several search threads without locking. The two longs of an entry are written
+ * separately, so a probe can see the key of one result with the data of another; because the key is stored XORed
+ * with its data, such a torn entry fails to match and is treated as a miss.</p>
+ *
+ * @author Gary Blackwood
+ */
+public class TranspositionTable {
+
+  // The score is exact.
+  public static final int EXACT = 1;
+  // The score is a lower bound: the search failed high.
+  public static final int LOWER_BOUND = 2;
+  // The score is an upper bound: the search failed low.
+  public static final int UPPER_BOUND = 3;
+
+  private static final int ENTRIES_PER_BUCKET = 2;
+  private static final int BYTES_PER_ENTRY = 16;
+  private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+  private long[] keys;
+  private long[] data;
+  private int bucketMask;
+  private LongAdder hits;
+  private LongAdder misses;
+  private LongAdder overwrites;
+
+  /**
+   * Create a new transposition table that uses at most the given amount of memory.
+   *
+   * @param megabytes    The size of the table in megabytes.
+   */
+  public TranspositionTable( int megabytes ) {
+    long buckets = Math.max( 1, megabytes ) * BYTES_PER_MEGABYTE / ( ENTRIES_PER_BUCKET * BYTES_PER_ENTRY );
+    buckets = Math.min( Long.highestOneBit( buckets ), 1 << 29 );
+
+    this.keys = new long[ (int) buckets * ENTRIES_PER_BUCKET ];
+    this.data = new long[ (int) buckets * ENTRIES_PER_BUCKET ];
+    this.bucketMask = (int) buckets - 1;
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.overwrites = new LongAdder();
+  }
+
+  /**
+   * Look up the result stored for a position.
+   *
+   * @param hash    The Zobrist hash of the position.
+   *
+   * @return The packed result for the position, or 0 if the table holds no result for it.
+   */
+  public long probe( long hash ) {
+    int index = bucketIndex( hash );
+
+    for ( int i = index; i < index + ENTRIES_PER_BUCKET; i++ ) {
+      long entry = this.data[ i ];
+      if ( entry != 0 && ( this.keys[ i ] ^ entry ) == hash ) {
+        this.hits.increment();
+        return ( entry );
+      }
+    }
+
+    this.misses.increment();
+    return ( 0 );
+  }
+
+  /**
+   * Store the result of searching a position.
+   *
+   * @param hash     The Zobrist hash of the position.
+   * @param depth    The depth to which the position was searched.
+   * @param bound    EXACT, LOWER_BOUND or UPPER_BOUND.
+   * @param score    The score of the position.
+   * @param move     The best move found as a packed move, or Moves.NONE if there is none.
+   */
+  public void store( long hash, int depth, int bound, int score, int move ) {
+    int index = bucketIndex( hash );
+    int packedMove = move & Moves.KEY_MASK;
+
+    long entry = this.data[ index ];
+    if ( entry == 0 || ( this.keys[ index ] ^ entry ) == hash || depth >= depth( entry ) ) {
+      write( index, hash, depth, bound, score, packedMove );
+    } else {
+      write( index + 1, hash, depth, bound, score, packedMove );
+    }
+  }
+
+  /**
+   * Remove every result from the table and reset the statistics.
+   */
+  public void clear() {
+    Arrays.fill( this.keys, 0 );
+    Arrays.fill( this.data, 0 );
+    resetStatistics();
+  }
+
+  /**
+   * Reset the hit, miss and overwrite counters to zero.
+   */
+  public void resetStatistics() {
+    this.hits.reset();
+    this.misses.reset();
+    this.overwrites.reset();
+  }
+
+  /**
+   * How many probes found a result for the position?
+   *
+   * @return The number of successful probes.
+   */
+  public long getHits() {
+    return ( this.hits.sum() );
+  }
+
+  /**
+   * How many probes found nothing for the position?
+   *
+   * @return The number of unsuccessful probes.
+   */
+  public long getMisses() {
+    return ( this.misses.sum() );
+  }
+
+  /**
+   * How many stores replaced the result of a different position?
+   *
+   * @return The number of results lost to replacement.
+   */
+  public long getOverwrites() {
+    return ( this.overwrites.sum() );
+  }
+
+  /**
+   * How many entries does the table have room for?
+   *
+   * @return The capacity of the table in entries.
+   */
+  public int getCapacity() {
+    return ( this.keys.length );
+  }
+
+  /**
+   * Extract the score from a packed result.
+   *
+   * @param entry    A packed result returned by probe.
+   *
+   * @return The stored score.
+   */
+  public static int score( long entry ) {
+    return ( (int) entry );
+  }
+
+  /**
+   * Extract the search depth from a packed result.
+   *
+   * @param entry    A packed result returned by probe.
+   *
+   * @return The stored depth.
+   */
+  public static int depth( long entry ) {
+    return ( (byte)( entry >>> 49 ) );
+  }
+
+  /**
+   * Extract the bound type from a packed result.
+   *
+   * @param entry    A packed result returned by probe.
+   *
+   * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+   */
+  public static int bound( long entry ) {
+    return ( (int)( entry >>> 57 ) & 0x3 );
+  }
+
+  /**
+   * Extract the best move from a packed result. Only the squares and promotion of the move are stored, not its flags.
+   *
+   * @param entry    A packed result returned by probe.
+   *
+   * @return The stored move masked with Moves.KEY_MASK, or Moves.NONE if there is none.
+   */
+  public static int bestMove( long entry ) {
+    return ( (int)( entry >>> 32 ) & Moves.KEY_MASK );
+  }
+
+  /**
+   * Does the packed result hold the best move found for 'move's position?
+   *
+   * @param entry    A packed result returned by probe.
+   * @param move     The packed move to compare with.
+   *
+   * @return True if 'move' is the stored best move, false otherwise.
+   */
+  public static boolean isBestMove( long entry, int move ) {
+    return ( bestMove( entry ) == ( move & Moves.KEY_MASK ) );
+  }
+
+  /**
+   * Find the bucket that a position belongs to.
+   *
+   * @param hash    The Zobrist hash of the position.
+   *
+   * @return The index of the first entry of the bucket.
+   */
+  private int bucketIndex( long hash ) {
+    return ( ( (int) hash & this.bucketMask ) * ENTRIES_PER_BUCKET );
+  }
+
+  /**
+   * Write a result into an entry, keeping the previous best move if the new result has none.
+   */
+  private void write( int index, long hash, int depth, int bound, int score, int packedMove ) {
+    long old = this.data[ index ];
+    if ( ( this.keys[ index ] ^ old ) == hash ) {
+      if ( packedMove == 0 ) {
+        packedMove = bestMove( old );
+      }
+    } else if ( old != 0 ) {
+      this.overwrites.increment();
+    }
+
+    long entry = ( (long) bound << 57 ) | ( (long)( depth & 0xFF ) << 49 ) | ( (long) packedMove << 32 )
+                 | ( score & 0xFFFFFFFFL );
+    this.keys[ index ] = hash ^ entry;
+    this.data[ index ] = entry;
+  }
+}
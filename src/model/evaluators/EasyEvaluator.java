@@ -16,4 +16,12 @@ public class EasyEvaluator implements Evaluator {
     return ( ( board.evaluateMaterial() * MATERIAL_WEIGHT )
 	     + ( board.evaluatePiecePositions() * POSITION_WEIGHT ) );
   }
+
+  public int evaluateFast( Board board ) {
+    return ( evaluate( board ) );
+  }
+
+  public int getMaterialWeight() {
+    return ( MATERIAL_WEIGHT );
+  }
 }
\ No newline at end of file
@@ -11,4 +11,19 @@ public interface Evaluator {
 
   public int evaluate( Board board );
 
+  /**
+   * Estimate the score of a position from the terms the board keeps up to date as moves are made, for the search to
+   * decide cheaply whether a position is worth searching.
+   *
+   * @return The estimated score, on the same scale as evaluate.
+   */
+  public int evaluateFast( Board board );
+
+  /**
+   * How much is one unit of Board material, such as Board.pieceValue, worth in the scores returned by evaluate?
+   *
+   * @return The weight of material in this evaluator's scores.
+   */
+  public int getMaterialWeight();
+
 }
\ No newline at end of file
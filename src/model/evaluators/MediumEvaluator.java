@@ -12,10 +12,22 @@ public class MediumEvaluator implements Evaluator {
   private static final int MATERIAL_WEIGHT = 50;
   private static final int POSITION_WEIGHT = 25;
   private static final int DEVELOPMENT_WEIGHT = 25;
+  // Well below the material weight: the search finds most captures itself, so this only nudges it towards threats.
+  private static final int HANGING_WEIGHT = 10;
 
   public int evaluate( Board board ) {
     return ( ( board.evaluateMaterial() * MATERIAL_WEIGHT )
 	     + ( board.evaluatePiecePositions() * POSITION_WEIGHT )
-	     + ( board.evaluatePieceDevelopment() * DEVELOPMENT_WEIGHT ) );
+	     + ( board.evaluatePieceDevelopment() * DEVELOPMENT_WEIGHT )
+	     + ( board.evaluateHangingPieces() * HANGING_WEIGHT ) );
+  }
+
+  public int evaluateFast( Board board ) {
+    return ( ( board.evaluateMaterial() * MATERIAL_WEIGHT )
+	     + ( board.evaluatePiecePositions() * POSITION_WEIGHT ) );
+  }
+
+  public int getMaterialWeight() {
+    return ( MATERIAL_WEIGHT );
   }
 }
\ No newline at end of file
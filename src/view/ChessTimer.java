@@ -223,6 +223,22 @@ public class ChessTimer extends JPanel {
     return rundown;
   }
 
+  /**
+   * returns the time left on the clock of the given color
+   * 
+   * @param color
+   *          WHITE or BLACK
+   * @return milliseconds remaining, or -1 if the game is untimed
+   */
+  public long getTimeRemaining(byte color) {
+    if ( !timedGame ) {
+      return -1;
+    }
+    int clock = ( color == WHITE ) ? TIMER_ONE : TIMER_TWO;
+    return ( ( h[clock] * SEC_TO_MIN + min[clock] ) * SEC_TO_MIN + sek[clock] )
+        * (long) MILI_TO_SECOND;
+  }
+
   /**
    * pauses the timer-thread for external access
    */
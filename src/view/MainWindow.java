@@ -43,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <CODE>myWindow</CODE> distributes methods to build a GUI instance of
@@ -77,6 +78,7 @@ public final class MainWindow {
   private final String PLAYER_TWO_DEFAULT_NAME = "Player2";
   private final String MENU_GAME_LABEL = "Game";
   private final String MENU_NEW_LABEL = "New";
+  private final String MENU_PONDER_LABEL = "AI thinks on human's time";
   private final String MENU_VIEW_LABEL = "View";
   private final String MENU_HIGHLIGHTING = "Highlighting";
   private final String MENU_VIEW_PREVIOUS = "View previous move";
@@ -129,6 +131,11 @@ public final class MainWindow {
   boolean highlightPrevious = false;
   boolean highlightPossible = false;
   boolean autoChangePerspective = true;
+  // Pondering, off until turned on from the menu: the AI searches its reply to
+  // the expected human move while the human thinks
+  boolean ponder = false;
+  private AI ponderer;
+  private CompletableFuture<Move> ponderRequest;
 
   private JPanel testPanel;
   private JList list = new JList ();
@@ -229,6 +236,15 @@ public final class MainWindow {
       }
     });
     menu.add (menuItem);
+    JCheckBoxMenuItem ponderItem = new JCheckBoxMenuItem (MENU_PONDER_LABEL);
+    ponderItem.addItemListener (new ItemListener () {
+      @Override
+      public void itemStateChanged(ItemEvent arg0) {
+        ponder = arg0.getStateChange () == ItemEvent.SELECTED;
+      }
+    });
+    ponderItem.setSelected (ponder);
+    menu.add (ponderItem);
 
     thisBar.add (menu);
     menu = new JMenu (MENU_VIEW_LABEL);
@@ -536,6 +552,13 @@ public final class MainWindow {
       // activate mouseListener
       followTheMouse (true);
 
+      // let an AI opponent search its reply to the expected move meanwhile
+      Player opponent = ( player == p1 ) ? p2 : p1;
+      if ( ponder && !opponent.isHuman () ) {
+        ponderer = (AI) opponent;
+        ponderRequest = ponderer.ponder (board);
+      }
+
       // wait until humanMove is set or Thread is Paused
       while ( humanMove == null && !myThread.isPaused () ) {
         synchronized (myThread) {
@@ -544,14 +567,26 @@ public final class MainWindow {
       }
       // if Thread is Paused, deactivate mouseListener
       if ( myThread.isPaused () ) {
+        stopPondering ();
         followTheMouse (false);
       }
       // else if humanMove is set...
       else if ( humanMove != null ) {
+        // keep the ponder search if it expected this move
+        if ( ponderRequest != null ) {
+          if ( humanMove.equals (ponderer.getPonderMove ()) ) {
+            ponderer.setTimeRemaining (myTimer.getTimeRemaining (ponderer
+                .getColourByte ()));
+            ponderer.ponderHit ();
+          }
+          else {
+            stopPondering ();
+          }
+        }
         // make move on board
         board.makeMove (humanMove);
         if ( isEndGameSituation (humanMove) ) {
-
+          stopPondering ();
         }
         else {
           // update HistoryPanel
@@ -567,7 +602,31 @@ public final class MainWindow {
     }
     else {
       followTheMouse (false);
-      Move aiMove = player.getMove (board);
+      player.setTimeRemaining (myTimer.getTimeRemaining (player.getColourByte ()));
+      // search on another thread, so that undo and new game can pause this one
+      // without waiting for the AI to finish thinking
+      AI ai = (AI) player;
+      Board searched = board;
+      CompletableFuture<Move> request;
+      if ( ponderRequest != null && ponderer == ai ) {
+        // ponder hit: the search for this move is already running
+        request = ponderRequest;
+        ponderRequest = null;
+      }
+      else {
+        stopPondering ();
+        request = ai.requestMove (board);
+      }
+      while ( !request.isDone () && !myThread.isPaused () && board == searched ) {
+        synchronized (myThread) {
+          myThread.waitHere ();
+        }
+      }
+      if ( myThread.isPaused () || board != searched ) {
+        request.cancel (true);
+        return;
+      }
+      Move aiMove = request.join ();
 
       if ( !myThread.isPaused () ) {
         board.makeMove (aiMove);
@@ -617,6 +676,17 @@ public final class MainWindow {
       }
       return true;
     }
+    // check for a draw by repetition or the fifty move rule
+    else if ( board.isDraw () ) {
+      moveStorage.add (move);
+      addHistory ();
+      frame.repaint ();
+      displayMessage ("Draw");
+      synchronized (myThread) {
+        myThread.pause ();
+      }
+      return true;
+    }
     else if ( myTimer.isRundown () ) {
       changeColorTo(WHITE);
       frame.repaint();
@@ -1101,6 +1171,16 @@ public final class MainWindow {
     }
   }
 
+  /**
+   * stops the AI searching on the human's time, if it is
+   */
+  private void stopPondering() {
+    if ( ponderRequest != null ) {
+      ponderRequest.cancel (true);
+      ponderRequest = null;
+    }
+  }
+
   /**
    * <code>ActionThread</code> extends Thread to build the game-thread that can
    * be stopped and restarted either at the end of a game/beginning of a new